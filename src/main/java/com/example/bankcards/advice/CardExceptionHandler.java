@@ -1,6 +1,10 @@
 package com.example.bankcards.advice;
 
 import com.example.bankcards.advice.response.*;
+import com.example.bankcards.exception.IdempotencyRequestInProgressException;
+import com.example.bankcards.exception.InvalidPageCursorException;
+import com.example.bankcards.exception.InvalidPageSizeException;
+import com.example.bankcards.exception.InvalidTransactionFilterException;
 import com.example.bankcards.exception.card.*;
 import com.example.bankcards.exception.card.encryptor.*;
 import com.example.bankcards.exception.customer.*;
@@ -42,12 +46,30 @@ public class CardExceptionHandler {
         return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
     }
 
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(CardClosedException.class)
+    private RuntimeExceptionResponse cardClosed(CardClosedException e){
+        return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
+    }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(CardBalanceNotZeroException.class)
+    private RuntimeExceptionResponse cardBalanceNotZero(CardBalanceNotZeroException e){
+        return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
+    }
+
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler(CardBlockedException.class)
     private RuntimeExceptionResponse cardBlocked(CardBlockedException e){
         return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
     }
 
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(CardLockTimeoutException.class)
+    private RuntimeExceptionResponse cardLockTimeout(CardLockTimeoutException e){
+        return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
+    }
+
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler(LimitExhaustedException.class)
     private RuntimeExceptionResponse limitExhausted(LimitExhaustedException e){
@@ -65,4 +87,28 @@ public class CardExceptionHandler {
     private RuntimeExceptionResponse cardDecrypted(DecryptException e){
         return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
     }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(IdempotencyRequestInProgressException.class)
+    private RuntimeExceptionResponse idempotencyRequestInProgress(IdempotencyRequestInProgressException e){
+        return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(InvalidPageCursorException.class)
+    private RuntimeExceptionResponse invalidPageCursor(InvalidPageCursorException e){
+        return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(InvalidPageSizeException.class)
+    private RuntimeExceptionResponse invalidPageSize(InvalidPageSizeException e){
+        return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(InvalidTransactionFilterException.class)
+    private RuntimeExceptionResponse invalidTransactionFilter(InvalidTransactionFilterException e){
+        return new RuntimeExceptionResponse(e.getMessage(), LocalDateTime.now());
+    }
 }
@@ -0,0 +1,44 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.idempotency.store.FailoverIdempotencyStore;
+import com.example.bankcards.idempotency.store.IdempotencyStore;
+import com.example.bankcards.idempotency.store.JdbcIdempotencyStore;
+import com.example.bankcards.idempotency.store.LocalIdempotencyStore;
+import com.example.bankcards.idempotency.store.RedisIdempotencyStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Выбор хранилища ключей идемпотентности: idempotency.store = redis | local | jdbc,
+ * idempotency.fallback-store - хранилище на случай недоступности основного (пусто - без резерва).
+ */
+@Configuration
+public class IdempotencyStoreConfig {
+
+    @Bean
+    @Primary
+    public IdempotencyStore idempotencyStore(RedisIdempotencyStore redisStore,
+                                             LocalIdempotencyStore localStore,
+                                             JdbcIdempotencyStore jdbcStore,
+                                             @Value("${idempotency.store:redis}") String store,
+                                             @Value("${idempotency.fallback-store:}") String fallbackStore) {
+
+        IdempotencyStore primary = select(store, redisStore, localStore, jdbcStore);
+        if (fallbackStore.isBlank() || fallbackStore.equals(store)) {
+            return primary;
+        }
+        return new FailoverIdempotencyStore(primary, select(fallbackStore, redisStore, localStore, jdbcStore));
+    }
+
+    private IdempotencyStore select(String name, RedisIdempotencyStore redisStore,
+                                    LocalIdempotencyStore localStore, JdbcIdempotencyStore jdbcStore) {
+        return switch (name) {
+            case "redis" -> redisStore;
+            case "local" -> localStore;
+            case "jdbc" -> jdbcStore;
+            default -> throw new IllegalArgumentException("Unknown idempotency store: " + name);
+        };
+    }
+}
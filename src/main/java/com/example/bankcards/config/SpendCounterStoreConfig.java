@@ -0,0 +1,40 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.limit.store.FailoverSpendCounterStore;
+import com.example.bankcards.limit.store.LocalSpendCounterStore;
+import com.example.bankcards.limit.store.RedisSpendCounterStore;
+import com.example.bankcards.limit.store.SpendCounterStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Выбор хранилища счётчиков расходов: card.limits.store = redis | local,
+ * card.limits.fallback-store - хранилище на случай недоступности основного (пусто - без резерва).
+ */
+@Configuration
+public class SpendCounterStoreConfig {
+
+    @Bean
+    @Primary
+    public SpendCounterStore spendCounterStore(RedisSpendCounterStore redisStore,
+                                               LocalSpendCounterStore localStore,
+                                               @Value("${card.limits.store:redis}") String store,
+                                               @Value("${card.limits.fallback-store:}") String fallbackStore) {
+
+        SpendCounterStore primary = select(store, redisStore, localStore);
+        if (fallbackStore.isBlank() || fallbackStore.equals(store)) {
+            return primary;
+        }
+        return new FailoverSpendCounterStore(primary, select(fallbackStore, redisStore, localStore));
+    }
+
+    private SpendCounterStore select(String name, RedisSpendCounterStore redisStore, LocalSpendCounterStore localStore) {
+        return switch (name) {
+            case "redis" -> redisStore;
+            case "local" -> localStore;
+            default -> throw new IllegalArgumentException("Unknown spend counter store: " + name);
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.outbox.sink.FileTransactionEventSink;
+import com.example.bankcards.outbox.sink.HttpTransactionEventSink;
+import com.example.bankcards.outbox.sink.InMemoryTransactionEventSink;
+import com.example.bankcards.outbox.sink.TransactionEventSink;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Выбор получателя событий outbox: outbox.sink = memory | file | http, задаётся явно вместе с outbox.enabled.
+ * Создаётся только выбранный получатель; файлу и адресу значений по умолчанию нет,
+ * чтобы события не писались в рабочий каталог процесса или на непредусмотренный адрес.
+ */
+@ConditionalOnProperty(prefix = "outbox", name = "enabled", havingValue = "true")
+@Configuration
+public class TransactionEventSinkConfig {
+
+    @Bean
+    public TransactionEventSink transactionEventSink(ObjectMapper objectMapper,
+                                                     RestClient.Builder restClientBuilder,
+                                                     @Value("${outbox.sink}") String sink,
+                                                     @Value("${outbox.file.path:}") String filePath,
+                                                     @Value("${outbox.http.url:}") String url,
+                                                     @Value("${outbox.http.timeout-millis:5000}") long timeoutMillis) {
+        return switch (sink) {
+            case "memory" -> new InMemoryTransactionEventSink();
+            case "file" -> {
+                if (filePath.isBlank()) {
+                    throw new IllegalArgumentException("outbox.file.path is required for the file transaction event sink");
+                }
+                yield new FileTransactionEventSink(objectMapper, Path.of(filePath));
+            }
+            case "http" -> {
+                if (url.isBlank()) {
+                    throw new IllegalArgumentException("outbox.http.url is required for the http transaction event sink");
+                }
+                yield new HttpTransactionEventSink(restClientBuilder, url, Duration.ofMillis(timeoutMillis));
+            }
+            default -> throw new IllegalArgumentException("Unknown transaction event sink: " + sink);
+        };
+    }
+}
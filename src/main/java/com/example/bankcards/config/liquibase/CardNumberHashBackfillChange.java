@@ -0,0 +1,102 @@
+package com.example.bankcards.config.liquibase;
+
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
+import com.example.bankcards.util.CardNumberEncryptorUtil;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Заполнение card_number_hash для уже существующих карт.
+ * Строки обрабатываются пачками по batchSize, каждая пачка коммитится отдельно, поэтому в памяти и под блокировкой
+ * одновременно не больше batchSize строк. Набор изменений выполняется вне транзакции (runInTransaction="false"):
+ * после сбоя повторный запуск продолжит с карт, у которых хэш ещё не заполнен.
+ */
+@Slf4j
+@Setter
+public class CardNumberHashBackfillChange implements CustomTaskChange {
+
+    private static final String SELECT_BATCH =
+            "SELECT id, card_number FROM card WHERE card_number_hash IS NULL ORDER BY id LIMIT ?";
+    private static final String UPDATE_HASH = "UPDATE card SET card_number_hash = ? WHERE id = ?";
+
+    private String encryptionKey;
+    private String encryptionSalt;
+    private String blindIndexKey;
+    private String batchSize = "500";
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        CardNumberEncryptorUtil encryptorUtil = new CardNumberEncryptorUtil(encryptionKey, encryptionSalt);
+        CardNumberBlindIndexUtil blindIndexUtil = new CardNumberBlindIndexUtil(blindIndexKey);
+        int limit = Integer.parseInt(batchSize);
+
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        int total = 0;
+        try (PreparedStatement select = connection.prepareStatement(SELECT_BATCH);
+             PreparedStatement update = connection.prepareStatement(UPDATE_HASH)) {
+
+            while (true) {
+                Map<Long, String> batch = new LinkedHashMap<>();
+                select.setInt(1, limit);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        batch.put(rs.getLong("id"), rs.getString("card_number"));
+                    }
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                for (Map.Entry<Long, String> row : batch.entrySet()) {
+                    String cardNumber = encryptorUtil.decryptCardNumber(row.getValue());
+                    update.setString(1, blindIndexUtil.hashCardNumber(cardNumber));
+                    update.setLong(2, row.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+                database.commit();
+                total += batch.size();
+            }
+        } catch (SQLException | DatabaseException e) {
+            throw new CustomChangeException(e.getMessage(), e);
+        }
+        log.info("Card number hash backfilled for {} cards", total);
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "card_number_hash backfilled";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        errors.checkRequiredField("encryptionKey", encryptionKey);
+        errors.checkRequiredField("encryptionSalt", encryptionSalt);
+        errors.checkRequiredField("blindIndexKey", blindIndexKey);
+        return errors;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bankcards.config.security_filter;
 
 import com.example.bankcards.security.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -27,31 +28,30 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
+        Claims claims = null;
 
         if (authHeader != null && !authHeader.isBlank() && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);
+            String jwt = authHeader.substring(7);
 
             if (jwt.isBlank()){
                 response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid JWT token");
             }
-            username = jwtUtil.extractUsername(jwt);
+            // Подпись и срок действия проверяются один раз, дальше работаем с уже разобранными claims
+            claims = jwtUtil.extractAllClaims(jwt);
         }
 
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            if (jwtUtil.isTokenValid(jwt, username)) {
-                // Извлечение ролей из токена
-                List<SimpleGrantedAuthority> authorities = jwtUtil.extractRoles(jwt).stream()
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
+        if (claims != null && claims.getSubject() != null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Извлечение ролей из токена
+            List<SimpleGrantedAuthority> authorities = jwtUtil.extractRoles(claims).stream()
+                    .map(SimpleGrantedAuthority::new)
+                    .collect(Collectors.toList());
 
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(username, null, authorities);
+            UsernamePasswordAuthenticationToken authToken =
+                    new UsernamePasswordAuthenticationToken(claims.getSubject(), null, authorities);
 
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
         filterChain.doFilter(request, response);
@@ -1,8 +1,9 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.card.*;
+import com.example.bankcards.idempotency.Idempotent;
 import com.example.bankcards.service.AdminCardFunction;
-import com.example.bankcards.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,11 +13,16 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import javax.validation.Valid;
 import javax.validation.constraints.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 @PreAuthorize("hasRole('ADMIN')")
 @RequiredArgsConstructor
@@ -24,8 +30,10 @@ import javax.validation.constraints.*;
 @RestController
 public class AdminCardController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final AdminCardFunction adminCardFunction;
-    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Запрос создания карты
@@ -36,14 +44,11 @@ public class AdminCardController {
     @Operation(summary = "Создать карту", description = "В ответе возвращается dto карты")
     @Tag(name = "admin", description = "Card API")
     @PostMapping("/create")
+    @Idempotent
     public CardResponse createCard(@Valid @RequestBody CreateCardRequest request,
                                    @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey) {
 
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
-
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, CardResponse.class);
-        }
-        return adminCardFunction.createCard(request, idempotencyKey);
+        return adminCardFunction.createCard(request);
     }
 
 
@@ -56,13 +61,10 @@ public class AdminCardController {
     @Operation(summary = "Изменение номера и срока действия карты", description = "В ответе возвращается dto карты")
     @Tag(name = "admin", description = "Card API")
     @PutMapping("/update")
+    @Idempotent
     public CardResponse updateCard(@Valid @RequestBody UpdateCardRequest request,
                                    @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey) {
 
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
-
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, CardResponse.class);
-        }
         return adminCardFunction.updateCard(request);
     }
 
@@ -76,15 +78,12 @@ public class AdminCardController {
     @Operation(summary = "Удаление карты", description = "В ответе ничего не возвращается.")
     @Tag(name = "delete", description = "Card API")
     @DeleteMapping("/delete")
+    @Idempotent
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public String deleteCard(@Valid @RequestBody DeleteCardRequest request,
                              @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey) {
 
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, String.class);
-        }
-
-        return adminCardFunction.deleteCard(request, idempotencyKey);
+        return adminCardFunction.deleteCard(request);
     }
 
     /**
@@ -96,13 +95,11 @@ public class AdminCardController {
     @Operation(summary = "Активировать карту", description = "В ответе ничего не возвращается.")
     @Tag(name = "admin", description = "Card API")
     @PostMapping("/activate")
+    @Idempotent
     public String activateCard(@Valid @RequestBody ActivateCardRequest request,
                                @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey) {
 
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, String.class);
-        }
-        return adminCardFunction.activateCard(request, idempotencyKey);
+        return adminCardFunction.activateCard(request);
     }
 
     /**
@@ -114,12 +111,76 @@ public class AdminCardController {
     @Operation(summary = "Заблокировать карту", description = "В ответе ничего не возвращается.")
     @Tag(name = "admin", description = "Card API")
     @PostMapping("/blocked")
+    @Idempotent
     public String blockCard(@Valid @RequestBody BlockCardRequest request,
                             @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey) {
 
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, String.class);
+        return adminCardFunction.blockCard(request);
+    }
+
+    /**
+     * Запрос включения режима горячей карты: баланс делится на слоты, зачисления не блокируют карту.
+     * @param request dto - с номером карты и числом слотов (0 - выключить)
+     * @param idempotencyKey
+     * @return строка с ответом
+     */
+    @Operation(summary = "Задать число слотов баланса карты", description = "В ответе ничего не возвращается.")
+    @Tag(name = "admin", description = "Card API")
+    @PostMapping("/hot-balance")
+    @Idempotent
+    public String setHotBalanceSlots(@Valid @RequestBody SetHotBalanceSlotsRequest request,
+                                     @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey) {
+
+        return adminCardFunction.setHotBalanceSlots(request);
+    }
+
+    /**
+     * Запрос установки дневного и месячного лимитов расходов по карте
+     * @param request dto - с номером карты и лимитами
+     * @param idempotencyKey
+     * @return строка с ответом
+     */
+    @Operation(summary = "Установить лимиты расходов по карте", description = "В ответе ничего не возвращается.")
+    @Tag(name = "admin", description = "Card API")
+    @PostMapping("/limits")
+    @Idempotent
+    public String setLimits(@Valid @RequestBody SetLimitsForCardRequest request,
+                            @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey) {
+
+        return adminCardFunction.setLimits(request);
+    }
+
+    /**
+     * Выгрузка всех карт в формате NDJSON: строки пишутся в ответ по мере чтения из БД
+     * @return поток dto карт, по одному JSON-объекту на строку
+     */
+    @Operation(summary = "Выгрузить все карты", description = "В ответе возвращается NDJSON с dto карт.")
+    @Tag(name = "admin", description = "Card API")
+    @GetMapping(value = "/export/cards", produces = NDJSON)
+    public StreamingResponseBody exportCards() {
+        return output -> adminCardFunction.exportCards(card -> writeLine(output, card));
+    }
+
+    /**
+     * Выгрузка всех транзакций в формате NDJSON: строки пишутся в ответ по мере чтения из БД
+     * @return поток dto транзакций, по одному JSON-объекту на строку
+     */
+    @Operation(summary = "Выгрузить все транзакции", description = "В ответе возвращается NDJSON с dto транзакций.")
+    @Tag(name = "admin", description = "Card API")
+    @GetMapping(value = "/export/transactions", produces = NDJSON)
+    public StreamingResponseBody exportTransactions() {
+        return output -> adminCardFunction.exportTransactions(transaction -> writeLine(output, transaction));
+    }
+
+    /**
+     * Обрыв соединения прерывает выгрузку: исключение закрывает курсор и откатывает читающую транзакцию.
+     */
+    private void writeLine(OutputStream output, Object line) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(line));
+            output.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return adminCardFunction.blockCard(request, idempotencyKey);
     }
 }
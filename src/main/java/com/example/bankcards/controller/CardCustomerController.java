@@ -1,17 +1,19 @@
 package com.example.bankcards.controller;
 
 
-import com.example.bankcards.config.security_filter.*;
 import com.example.bankcards.dto.card.*;
+import com.example.bankcards.dto.transaction.TransactionPageResponse;
 import com.example.bankcards.dto.transaction.TransactionResponse;
 import com.example.bankcards.entity.enums.CardStatus;
-import com.example.bankcards.security.*;
+import com.example.bankcards.idempotency.Idempotent;
+import com.example.bankcards.idempotency.IdempotencyResultSerializer;
 import com.example.bankcards.service.CustomerCardFunctionService;
 import com.example.bankcards.service.IdempotencyService;
-import jakarta.servlet.http.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -21,12 +23,20 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
 @RequiredArgsConstructor
@@ -34,9 +44,13 @@ import java.util.List;
 @RestController
 public class CardCustomerController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final long BULK_RESULT_TTL_SECONDS = 3600;
+
     private final CustomerCardFunctionService cardFunctionService;
     private final IdempotencyService idempotencyService;
-    private final JwtUtil jwtUtil;
+    private final IdempotencyResultSerializer resultSerializer;
+    private final ObjectMapper objectMapper;
 
     /**
      * Запрос получений данных карты
@@ -47,9 +61,8 @@ public class CardCustomerController {
     @Tag(name = "get", description = "Card API")
     @GetMapping("/get/{cardNumber}")
     public CardResponse getCard(@PathVariable String cardNumber,
-                                HttpServletRequest request) {
-        return cardFunctionService.getCustomerCard(cardNumber, jwtUtil.extractUsername(request.getHeader("Authorization")
-                .substring(7)));
+                                @AuthenticationPrincipal String email) {
+        return cardFunctionService.getCustomerCard(cardNumber, email);
     }
 
     /**
@@ -62,10 +75,9 @@ public class CardCustomerController {
             @RequestParam(required = false) CardStatus status,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            HttpServletRequest request) {
+            @AuthenticationPrincipal String email) {
 
-        return cardFunctionService.getCustomerCards(jwtUtil.extractUsername(request.getHeader("Authorization")
-                .substring(7)), status, page, size);
+        return cardFunctionService.getCustomerCards(email, status, page, size);
     }
 
     /**
@@ -77,15 +89,79 @@ public class CardCustomerController {
     @Operation(summary = "Выполнить перевод между своими картами", description = "В ответе возвращается dto перевода.")
     @Tag(name = "post", description = "Card API")
     @PostMapping("/transfer")
+    @Idempotent
     public TransactionResponse transfer(@Valid @RequestBody TransferFundsBetweenUserCardsRequest transferDto,
                                         @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey,
-                                        HttpServletRequest request) {
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
+                                        @AuthenticationPrincipal String email) {
+        return cardFunctionService.transferBetweenCards(transferDto, email);
+    }
+
+    /**
+     * Запрос пакета переводов между своими картами под одним ключом идемпотентности
+     * @param bulkTransferDto dto со списком переводов
+     * @param idempotencyKey
+     * @return статусы переводов в порядке запроса
+     */
+    @Operation(summary = "Выполнить пакет переводов", description = "В ответе возвращается статус каждого перевода.")
+    @Tag(name = "post", description = "Card API")
+    @PostMapping("/transfer/bulk")
+    @Idempotent
+    public BulkTransferResponse bulkTransfer(@Valid @RequestBody BulkTransferRequest bulkTransferDto,
+                                             @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey,
+                                             @AuthenticationPrincipal String email) {
+        return cardFunctionService.bulkTransfer(bulkTransferDto, email);
+    }
 
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, TransactionResponse.class);
+    /**
+     * Запрос пакета переводов с потоковым ответом: статусы отдаются в формате NDJSON по мере коммита частей пакета.
+     * Повтор с тем же ключом возвращает сохранённые статусы тем же потоком. Ответ отдаётся после возврата из метода,
+     * поэтому аспект {@link Idempotent} здесь не подходит: пакет выполняется через IdempotencyService.runReserved.
+     * @param bulkTransferDto dto со списком переводов
+     * @param idempotencyKey
+     * @return поток статусов переводов, по одному JSON-объекту на строку
+     */
+    @Operation(summary = "Выполнить пакет переводов с потоковым ответом",
+            description = "В ответе возвращается NDJSON со статусом каждого перевода.")
+    @Tag(name = "post", description = "Card API")
+    @PostMapping(value = "/transfer/bulk/stream", produces = NDJSON)
+    public StreamingResponseBody bulkTransferStream(@Valid @RequestBody BulkTransferRequest bulkTransferDto,
+                                                    @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey,
+                                                    @AuthenticationPrincipal String email) {
+
+        Optional<byte[]> storedResult = idempotencyService.reserveOrGetResult(idempotencyKey);
+        if (storedResult.isPresent()) {
+            List<BulkTransferItemResponse> items = resultSerializer
+                    .deserialize(storedResult.get(), BulkTransferResponse.class).items();
+            return output -> {
+                for (BulkTransferItemResponse item : items) {
+                    writeLine(output, item);
+                }
+            };
         }
-        return cardFunctionService.transferBetweenCards(transferDto, idempotencyKey, jwtUtil.extractUsername(request
-                .getHeader("Authorization").substring(7)));
+
+        // При обрыве соединения пакет всё равно доводится до конца и сохраняется под ключом,
+        // чтобы повтор получил статусы, а не выполнил закоммиченные части второй раз
+        return output -> idempotencyService.runReserved(idempotencyKey, BULK_RESULT_TTL_SECONDS, () -> {
+            List<BulkTransferItemResponse> items = new ArrayList<>(bulkTransferDto.transfers().size());
+            AtomicBoolean clientConnected = new AtomicBoolean(true);
+            cardFunctionService.bulkTransfer(bulkTransferDto, email, item -> {
+                items.add(item);
+                if (clientConnected.get()) {
+                    try {
+                        writeLine(output, item);
+                    } catch (IOException e) {
+                        clientConnected.set(false);
+                    }
+                }
+            });
+            return resultSerializer.serialize(new BulkTransferResponse(items));
+        });
+    }
+
+    private void writeLine(OutputStream output, BulkTransferItemResponse item) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(item));
+        output.write('\n');
+        output.flush();
     }
 
     /**
@@ -97,31 +173,44 @@ public class CardCustomerController {
     @Operation(summary = "Выполнить вывод средств с карты", description = "В ответе возвращается dto транзакции вывода.")
     @Tag(name = "post", description = "Card API")
     @PostMapping("/withdraw")
+    @Idempotent
     public TransactionResponse withdraw(@Valid @RequestBody WithdrawFundsRequest withdrawDto,
                                         @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey,
-                                        HttpServletRequest request) {
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, TransactionResponse.class);
-        }
-        return cardFunctionService.withdrawalFromCard(withdrawDto, idempotencyKey, jwtUtil.extractUsername(request
-                .getHeader("Authorization").substring(7)));
+                                        @AuthenticationPrincipal String email) {
+        return cardFunctionService.withdrawalFromCard(withdrawDto, email);
     }
 
     /**
-     * Запрос получения всех транзакций по карте
-     * @return лист dto траназакций
+     * Запрос получения транзакций по карте страницами с фильтрами по периоду, типу, статусу, направлению и сумме
+     * @param cursor nextCursor из предыдущего ответа, без него возвращается первая страница
+     * @param size размер страницы, от 1 до 100
+     * @param historyTransactionsDto номер карты и необязательные фильтры: from, to, type, status, direction (IN/OUT), minAmount, maxAmount
+     * @return страница dto траназакций и курсор следующей страницы
      */
-    @Operation(summary = "Получить список транзакций по карте", description = "В ответе возвращается List dto транзакций.")
+    @Operation(summary = "Получить список транзакций по карте", description = "В ответе возвращается страница dto транзакций, подходящих под фильтры, и курсор следующей страницы.")
     @Tag(name = "get", description = "Card API")
     @GetMapping("/transactions")
-    public List<TransactionResponse> getTransactions(
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size, ShowTransactionalByCardRequest historyTransactionsDto,
-            @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey,
-            HttpServletRequest request) {
+    public TransactionPageResponse getTransactions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(TransactionPageResponse.MAX_SIZE) int size,
+            @Valid ShowTransactionalByCardRequest historyTransactionsDto,
+            @AuthenticationPrincipal String email) {
 
-        return cardFunctionService.getTransactionalByCard(historyTransactionsDto, page, size, idempotencyKey,
-                jwtUtil.extractUsername(request.getHeader("Authorization").substring(7)));
+        return cardFunctionService.getTransactionalByCard(historyTransactionsDto, cursor, size, email);
+    }
+
+    /**
+     * Запрос расходов карты за текущий день и месяц. Зачисления (CREDIT) и входящие переводы в сводку не входят
+     * @param cardNumber номер карты
+     * @return суммы расходов за день и месяц, в том числе по типам операций
+     */
+    @Operation(summary = "Получить расходы по карте", description = "В ответе возвращаются расходы за день и месяц по типам операций. " +
+            "Учитываются только списания, снятия и исходящие переводы; зачисления и входящие переводы не учитываются.")
+    @Tag(name = "get", description = "Card API")
+    @GetMapping("/spend-summary")
+    public CardSpendSummaryResponse getSpendSummary(@RequestParam String cardNumber,
+                                                    @AuthenticationPrincipal String email) {
+        return cardFunctionService.getSpendSummary(cardNumber, email);
     }
 
     /**
@@ -133,16 +222,12 @@ public class CardCustomerController {
     @Operation(summary = "Заблокировать карту", description = "В ответе ничего не возвращается.")
     @Tag(name = "put", description = "Card API")
     @PutMapping("/block")
+    @Idempotent
     public String blockCard(@Valid @RequestBody BlockCardRequest blockCardDto,
                             @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey,
-                            HttpServletRequest request){
-
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
+                            @AuthenticationPrincipal String email){
 
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, String.class);
-        }
-        return cardFunctionService.requestCardBlock(blockCardDto, idempotencyKey,
-                jwtUtil.extractUsername(request.getHeader("Authorization").substring(7)));
+        return cardFunctionService.requestCardBlock(blockCardDto, email);
     }
 
     /**
@@ -154,15 +239,11 @@ public class CardCustomerController {
     @Operation(summary = "Пополнить баланс карты", description = "В ответе ничего не возвращается.")
     @Tag(name = "put", description = "Card API")
     @PutMapping("/replenishment")
+    @Idempotent
     public TransactionResponse replenishmentCard(@Valid @RequestBody ReplenishmentCardRequest replenishmentCardDto,
                                                  @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey,
-                                                 HttpServletRequest request){
-
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
+                                                 @AuthenticationPrincipal String email){
 
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, TransactionResponse.class);
-        }
-        return cardFunctionService.cardReplenishment(replenishmentCardDto, idempotencyKey,
-                jwtUtil.extractUsername(request.getHeader("Authorization").substring(7)));
+        return cardFunctionService.cardReplenishment(replenishmentCardDto, email);
     }
 }
@@ -3,9 +3,9 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CustomerRegistrationRequest;
 import com.example.bankcards.dto.CustomerRegistrationResponse;
+import com.example.bankcards.idempotency.Idempotent;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.CustomerService;
-import com.example.bankcards.service.IdempotencyService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -25,7 +25,6 @@ public class CustomerController {
 
     private final CustomerService customerService;
     private final AuthService authService;
-    private final IdempotencyService idempotencyService;
 
     /**
      * Запрос регистрации нового пользователя
@@ -36,11 +35,9 @@ public class CustomerController {
     @Operation(summary = "Зарегистрировать нового пользователя", description = "В ответе возвращается dto.")
     @Tag(name = "sign up", description = "Customer")
     @PostMapping("/registration")
+    @Idempotent
     public CustomerRegistrationResponse customerRegistration(@Valid @RequestBody CustomerRegistrationRequest customerReqDto,
                                                              @RequestHeader("Idempotency-Key") @NotBlank String idempotencyKey){
-        if (idempotencyService.idempotencyKeyCheck(idempotencyKey)) {
-            return idempotencyService.getResultByIdempotencyKey(idempotencyKey, CustomerRegistrationResponse.class);
-        }
-        return customerService.registerCustomer(customerReqDto, idempotencyKey);
+        return customerService.registerCustomer(customerReqDto);
     }
 }
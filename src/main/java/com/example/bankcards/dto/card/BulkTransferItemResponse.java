@@ -0,0 +1,17 @@
+package com.example.bankcards.dto.card;
+
+/**
+ * Результат одного перевода пакета.
+ * SUCCESS - перевод выполнен, REJECTED - отклонён проверкой, FAILED - не выполнен из-за сбоя, его можно повторить.
+ */
+public record BulkTransferItemResponse(
+        int index,
+        Status status,
+        Long transactionId,
+        String error
+) {
+
+    public enum Status {
+        SUCCESS, REJECTED, FAILED
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.dto.card;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public record BulkTransferRequest(
+        @NotEmpty
+        @Size(max = 100000, message = "Bulk transfer must contain 100000 transfers or less")
+        List<@Valid TransferFundsBetweenUserCardsRequest> transfers
+) {
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.dto.card;
+
+import java.util.List;
+
+public record BulkTransferResponse(
+        List<BulkTransferItemResponse> items
+) {
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.dto.card;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Исходящие деньги карты: списания, снятия и переводы с карты. Зачисления и входящие переводы сюда не входят.
+ */
+public record CardSpendSummaryResponse(
+        @JsonFormat(pattern = "yyyy-MM-dd")
+        LocalDate day,
+        BigDecimal spentToday,
+        List<SpendTotalResponse> daily,
+        @JsonFormat(pattern = "yyyy-MM")
+        YearMonth month,
+        BigDecimal spentThisMonth,
+        List<SpendTotalResponse> monthly
+) {
+
+    public record SpendTotalResponse(
+            String type,
+            BigDecimal amount,
+            long operations
+    ) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto.card;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+public record SetHotBalanceSlotsRequest(
+        @NotNull
+        @Pattern(regexp = "\\d{16}", message = "Card number must be 16 digits")
+        String cardNumber,
+
+        @Min(value = 0, message = "Slots must be 0 or more")
+        @Max(value = 64, message = "Slots must be 64 or less")
+        int slots
+) {
+}
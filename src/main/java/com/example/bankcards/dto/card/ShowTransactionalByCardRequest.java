@@ -1,11 +1,42 @@
 package com.example.bankcards.dto.card;
 
+import com.example.bankcards.dto.transaction.TransactionFilter;
+import com.example.bankcards.entity.enums.TransactionDirection;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 public record ShowTransactionalByCardRequest(
         @NotNull
         @Pattern(regexp = "\\d{16}", message = "Card number must be 16 digits")
-        String cardNumber
+        String cardNumber,
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+        LocalDateTime from,
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+        LocalDateTime to,
+
+        TransactionType type,
+
+        TransactionStatus status,
+
+        TransactionDirection direction,
+
+        @DecimalMin(value = "0.0")
+        BigDecimal minAmount,
+
+        @DecimalMin(value = "0.0")
+        BigDecimal maxAmount
 ) {
+
+    public TransactionFilter filter() {
+        return new TransactionFilter(from, to, type, status, direction, minAmount, maxAmount);
+    }
 }
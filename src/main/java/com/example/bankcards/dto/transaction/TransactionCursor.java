@@ -0,0 +1,47 @@
+package com.example.bankcards.dto.transaction;
+
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.exception.InvalidPageCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция в истории операций карты: последняя отданная клиенту транзакция в порядке (createdAt, id).
+ * Клиенту передаётся непрозрачной строкой base64url.
+ */
+public record TransactionCursor(
+        LocalDateTime createdAt,
+        Long id
+) {
+
+    private static final String SEPARATOR = "|";
+
+    public static TransactionCursor after(Transaction transaction) {
+        return new TransactionCursor(transaction.getCreatedAt(), transaction.getId());
+    }
+
+    /**
+     * @return null для пустого курсора - первая страница
+     */
+    public static TransactionCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            return new TransactionCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidPageCursorException(cursor);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
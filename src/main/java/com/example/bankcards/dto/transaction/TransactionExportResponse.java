@@ -0,0 +1,19 @@
+package com.example.bankcards.dto.transaction;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record TransactionExportResponse(
+        Long id,
+        BigDecimal amount,
+        String currency,
+        String status,
+        String type,
+        Long sourceCardId,
+        Long targetCardId,
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        LocalDateTime createdAt
+) {
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.dto.transaction;
+
+import com.example.bankcards.entity.enums.TransactionDirection;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.exception.InvalidTransactionFilterException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Условия выборки истории операций карты; null - условие не задано.
+ * @param from начало периода включительно
+ * @param to конец периода не включительно
+ * @param direction null - исходящие и входящие операции
+ */
+public record TransactionFilter(
+        LocalDateTime from,
+        LocalDateTime to,
+        TransactionType type,
+        TransactionStatus status,
+        TransactionDirection direction,
+        BigDecimal minAmount,
+        BigDecimal maxAmount
+) {
+
+    public static final TransactionFilter NONE = new TransactionFilter(null, null, null, null, null, null, null);
+
+    public TransactionFilter {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidTransactionFilterException("Transaction filter 'from' must be before 'to'");
+        }
+        if (minAmount != null && maxAmount != null && minAmount.compareTo(maxAmount) > 0) {
+            throw new InvalidTransactionFilterException("Transaction filter 'minAmount' must not exceed 'maxAmount'");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.bankcards.dto.transaction;
+
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.exception.InvalidPageSizeException;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @param nextCursor курсор следующей страницы, null на последней странице
+ */
+public record TransactionPageResponse(
+        List<TransactionResponse> items,
+        String nextCursor
+) {
+
+    public static final int MAX_SIZE = 100;
+
+    /**
+     * Проверяется до запроса к БД: size + 1 уходит в LIMIT
+     */
+    public static void checkSize(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new InvalidPageSizeException(size, MAX_SIZE);
+        }
+    }
+
+    /**
+     * @param rows транзакции в порядке (createdAt, id), прочитанные с лимитом size + 1:
+     *             лишняя строка только показывает, что следующая страница есть
+     */
+    public static TransactionPageResponse of(List<Transaction> rows, int size,
+                                             Function<Transaction, TransactionResponse> mapper) {
+        checkSize(size);
+        List<Transaction> page = rows.size() > size ? rows.subList(0, size) : rows;
+        String nextCursor = rows.size() > size ? TransactionCursor.after(page.get(size - 1)).encode() : null;
+        return new TransactionPageResponse(page.stream().map(mapper).toList(), nextCursor);
+    }
+}
@@ -19,4 +19,5 @@ public class TransactionResponse {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
     private String statusTransaction;
+    private String transactionType;
 }
@@ -3,14 +3,13 @@ package com.example.bankcards.entity;
 
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.entity.enums.converter.CardStatusConverter;
-import com.example.bankcards.entity.operations.Transaction;
 import com.example.bankcards.util.CardNumberEncryptorConverter;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.List;
 
 @Entity
 @NoArgsConstructor
@@ -22,14 +21,17 @@ public class Card extends BaseEntity {
     @Id
     @Column(name = "id")
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequence_card")
-    @SequenceGenerator(name = "sequence_card", sequenceName = "card_main_sequence", allocationSize = 1)
+    @SequenceGenerator(name = "sequence_card", sequenceName = "card_main_sequence", allocationSize = 50)
     private Long id;
 
     @Column(name = "card_number")
     @Convert(converter = CardNumberEncryptorConverter.class)
     private String cardNumber;
 
-    @ManyToOne
+    @Column(name = "card_number_hash")
+    private String cardNumberHash;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", referencedColumnName = "id")
     private Customer customer;
 
@@ -43,9 +45,19 @@ public class Card extends BaseEntity {
     @Column(name = "card_balance")
     private BigDecimal balance;
 
+    /**
+     * Число слотов баланса горячей карты, 0 - обычная карта. См. HotCardBalanceService.
+     */
+    @Column(name = "balance_slots")
+    private int balanceSlots;
+
+    /**
+     * card_balance вместе с остатками слотов; подзапрос выполняется только для горячих карт.
+     */
+    @Formula("card_balance + CASE WHEN balance_slots > 0 THEN " +
+            "(SELECT COALESCE(SUM(s.balance), 0) FROM card_balance_slot s WHERE s.card_id = id) ELSE 0 END")
+    private BigDecimal totalBalance;
+
     @Column(name = "currency")
     private String currency;
-
-    @OneToMany(mappedBy = "sourceCard", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Transaction> history;
 }
@@ -7,7 +7,6 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 @Entity
@@ -19,7 +18,7 @@ public class Customer extends BaseEntity {
     @Id
     @Column(name = "id")
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequence_customer")
-    @SequenceGenerator(name = "sequence_customer", sequenceName = "customer_main_sequence", allocationSize = 1)
+    @SequenceGenerator(name = "sequence_customer", sequenceName = "customer_main_sequence", allocationSize = 50)
     private Long id;
 
     @Column(name = "name")
@@ -31,9 +30,6 @@ public class Customer extends BaseEntity {
     @Column(name = "password")
     private String password;
 
-    @OneToMany(mappedBy = "customer")
-    private List<Card> cards;
-
     @ManyToMany
     @JoinTable(name = "customer_role",
             joinColumns = @JoinColumn(name = "customer_id"),
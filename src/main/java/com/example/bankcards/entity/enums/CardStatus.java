@@ -5,7 +5,7 @@ import lombok.Getter;
 @Getter
 public enum CardStatus {
 
-    ACTIVE,BLOCKED,EXPIRED;
+    ACTIVE,BLOCKED,EXPIRED,CLOSED;
 
     public static CardStatus fromString(String cardStatus) {
         for (CardStatus status : CardStatus.values()) {
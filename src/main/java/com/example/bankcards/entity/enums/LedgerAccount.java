@@ -0,0 +1,9 @@
+package com.example.bankcards.entity.enums;
+
+/**
+ * Счёт проводки журнала: CARD - баланс карты, EXTERNAL - внешняя сторона пополнений и снятий наличных.
+ */
+public enum LedgerAccount {
+
+    CARD, EXTERNAL
+}
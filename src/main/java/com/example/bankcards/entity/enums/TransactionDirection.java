@@ -0,0 +1,21 @@
+package com.example.bankcards.entity.enums;
+
+import lombok.Getter;
+
+/**
+ * Направление операции относительно карты: OUT - карта источник (source_card_id), IN - получатель перевода (target_card_id).
+ */
+@Getter
+public enum TransactionDirection {
+
+    IN, OUT;
+
+    public static TransactionDirection fromString(String direction) {
+        for (TransactionDirection value : TransactionDirection.values()) {
+            if(value.toString().equals(direction)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid transaction direction: " + direction);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.entity.mapper;
 
 import com.example.bankcards.dto.card.CardResponse;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projection.CardView;
 import org.mapstruct.*;
 
 @Mapper(componentModel = "spring")
@@ -9,8 +10,13 @@ public interface CardMapper {
 
     @Mapping(target = "cardHolder", expression = "java(card.getCustomer().getName())")
     @Mapping(target = "cardNumber", source = "cardNumber", qualifiedByName = "convertCardNumberToMask")
+    @Mapping(target = "balance",
+            expression = "java(card.getTotalBalance() != null ? card.getTotalBalance() : card.getBalance())")
     CardResponse toCardResponse(Card card);
 
+    @Mapping(target = "cardNumber", source = "cardNumber", qualifiedByName = "convertCardNumberToMask")
+    CardResponse toCardResponse(CardView cardView);
+
 
     @Named("convertCardNumberToMask")
     default String convertCardNumberToMask(String cardNumber) {
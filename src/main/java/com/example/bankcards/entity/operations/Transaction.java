@@ -21,10 +21,16 @@ import java.math.BigDecimal;
 @Getter
 public class Transaction extends BaseEntity {
 
+    /**
+     * Совпадает с шагом transaction_main_sequence: каждое значение последовательности даёт столько id.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
     @Column(name = "id")
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequence_transaction")
-    @SequenceGenerator(name = "sequence_transaction", sequenceName = "transaction_main_sequence", allocationSize = 1)
+    @SequenceGenerator(name = "sequence_transaction", sequenceName = "transaction_main_sequence",
+            allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private BigDecimal amount;
@@ -38,11 +44,11 @@ public class Transaction extends BaseEntity {
     @Convert(converter = TransactionTypeConverter.class)
     private TransactionType transactionType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "source_card_id", referencedColumnName = "id")
     private Card sourceCard;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "target_card_id")
     private Card targetCard;
 
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class IdempotencyRequestInProgressException extends RuntimeException {
+
+    public IdempotencyRequestInProgressException(String idempotencyKey) {
+        super(String.format("Request with idempotency key %s is still being processed", idempotencyKey));
+    }
+}
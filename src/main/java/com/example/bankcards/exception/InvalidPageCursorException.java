@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class InvalidPageCursorException extends RuntimeException {
+
+    public InvalidPageCursorException(String cursor) {
+        super(String.format("Invalid page cursor %s", cursor));
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class InvalidPageSizeException extends RuntimeException {
+
+    public InvalidPageSizeException(int size, int maxSize) {
+        super(String.format("Page size must be between 1 and %d, got %d", maxSize, size));
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class InvalidTransactionFilterException extends RuntimeException {
+
+    public InvalidTransactionFilterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception.card;
+
+public class CardBalanceNotZeroException extends RuntimeException{
+
+    public CardBalanceNotZeroException(String cardNumber){
+        super(String.format("Card %s has a non-zero balance and cannot be closed", cardNumber));
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception.card;
+
+public class CardClosedException extends RuntimeException{
+
+    public CardClosedException(String cardNumber){
+        super(String.format("Card %s is closed", cardNumber));
+    }
+}
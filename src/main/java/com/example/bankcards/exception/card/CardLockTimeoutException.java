@@ -0,0 +1,8 @@
+package com.example.bankcards.exception.card;
+
+public class CardLockTimeoutException extends RuntimeException {
+
+    public CardLockTimeoutException() {
+        super("Card is busy with another operation, retry the request");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.idempotency;
+
+import com.example.bankcards.exception.ErrorValueIdempotencyKeyException;
+import com.example.bankcards.service.IdempotencyService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+
+/**
+ * Резервирование ключа, повтор сохранённого ответа и запись результата для методов с {@link Idempotent}.
+ * Результат записывается только после коммита транзакции, поэтому ответ откатившейся операции не кэшируется.
+ * Пока метод выполняется, резерв ключа продлевается, поэтому долгий метод не теряет его по in-flight-ttl-seconds.
+ */
+@Slf4j
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class IdempotencyAspect {
+
+    private final IdempotencyService idempotencyService;
+    private final IdempotencyResultSerializer resultSerializer;
+
+    @Around("@annotation(idempotent)")
+    public Object around(ProceedingJoinPoint joinPoint, Idempotent idempotent) throws Throwable {
+        String idempotencyKey = currentIdempotencyKey(idempotent.header());
+        Class<?> responseType = idempotent.responseType() == Object.class
+                ? ((MethodSignature) joinPoint.getSignature()).getReturnType()
+                : idempotent.responseType();
+
+        Optional<byte[]> storedResult = idempotencyService.reserveOrGetResult(idempotencyKey);
+        if (storedResult.isPresent()) {
+            log.debug("Replaying stored result for idempotency key {}", idempotencyKey);
+            return resultSerializer.deserialize(storedResult.get(), responseType);
+        }
+
+        Object result;
+        try (IdempotencyService.ReservationRenewal renewal = idempotencyService.renewWhileRunning(idempotencyKey)) {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            idempotencyService.releaseIdempotencyKey(idempotencyKey);
+            throw e;
+        }
+
+        byte[] payload = resultSerializer.serialize(result);
+        afterTransaction(() -> idempotencyService.saveResult(idempotencyKey, payload, idempotent.ttl()),
+                () -> idempotencyService.releaseIdempotencyKey(idempotencyKey));
+        return result;
+    }
+
+    private void afterTransaction(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    private String currentIdempotencyKey(String header) {
+        HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
+                .getRequest();
+        String idempotencyKey = request.getHeader(header);
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new ErrorValueIdempotencyKeyException();
+        }
+        return idempotencyKey;
+    }
+}
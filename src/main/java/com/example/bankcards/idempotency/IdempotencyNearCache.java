@@ -0,0 +1,83 @@
+package com.example.bankcards.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный кэш недавних результатов идемпотентных запросов перед Redis.
+ * Запись живёт не дольше, чем ключ в Redis: срок берётся из TTL при сохранении или из PTTL при чтении.
+ */
+@Component
+public class IdempotencyNearCache {
+
+    private final boolean enabled;
+    private final Map<String, CachedResult> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public IdempotencyNearCache(@Value("${idempotency.near-cache.enabled:true}") boolean enabled,
+                                @Value("${idempotency.near-cache.max-size:1000}") int maxSize) {
+        this.enabled = enabled;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public byte[] get(String idempotencyKey) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            CachedResult cached = entries.get(idempotencyKey);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return cached.payload;
+            }
+            if (cached != null) {
+                entries.remove(idempotencyKey);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String idempotencyKey, byte[] payload, long ttlMillis) {
+        if (!enabled || ttlMillis <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(idempotencyKey, new CachedResult(payload, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    public void invalidate(String idempotencyKey) {
+        synchronized (entries) {
+            entries.remove(idempotencyKey);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record CachedResult(byte[] payload, long expiresAt) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Сериализация результатов идемпотентных запросов в CBOR.
+ * Тип ответа известен из {@link Idempotent}, поэтому имя класса в значение не пишется.
+ */
+@Component
+public class IdempotencyResultSerializer {
+
+    private final ObjectMapper cborMapper = CBORMapper.builder()
+            .addModule(new JavaTimeModule())
+            .build();
+
+    public byte[] serialize(Object result) {
+        try {
+            return cborMapper.writeValueAsBytes(result);
+        } catch (IOException e) {
+            throw new SerializationException("Could not serialize idempotency result", e);
+        }
+    }
+
+    public <T> T deserialize(byte[] payload, Class<T> type) {
+        try {
+            return cborMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new SerializationException("Could not deserialize idempotency result", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.idempotency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод контроллера выполняется не более одного раза на значение заголовка Idempotency-Key.
+ * Повторный запрос с тем же ключом получает сохранённый результат первого выполнения.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+
+    /**
+     * Время хранения результата в секундах
+     */
+    long ttl() default 3600;
+
+    /**
+     * Тип сохраняемого ответа. По умолчанию - тип возвращаемого значения метода
+     */
+    Class<?> responseType() default Object.class;
+
+    String header() default "Idempotency-Key";
+}
@@ -0,0 +1,102 @@
+package com.example.bankcards.idempotency.store;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Переключение на резервное хранилище, если основное недоступно (например, при сбое Redis).
+ * Гарантия "ровно один раз" на время сбоя действует только в пределах резервного хранилища.
+ * Результат, сохранённый в резервное хранилище, запоминается и переносится в основное при первом
+ * успешном обращении к нему: иначе в основном остался бы маркер "запрос выполняется", а после его
+ * истечения запрос с тем же ключом выполнился бы повторно.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class FailoverIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyStore primary;
+    private final IdempotencyStore fallback;
+
+    private final Map<String, PendingResult> pendingResults = new ConcurrentHashMap<>();
+
+    @Override
+    public IdempotencyRecord reserveOrGet(String idempotencyKey, long inFlightTtlSeconds) {
+        PendingResult pending = pendingResults.get(idempotencyKey);
+        if (pending != null && pending.expiresAt() > System.currentTimeMillis()) {
+            return new IdempotencyRecord(pending.result(), pending.expiresAt() - System.currentTimeMillis());
+        }
+        try {
+            replayPendingResults();
+            return primary.reserveOrGet(idempotencyKey, inFlightTtlSeconds);
+        } catch (DataAccessException e) {
+            log.warn("Primary idempotency store unavailable, using fallback: {}", e.getMessage());
+            return fallback.reserveOrGet(idempotencyKey, inFlightTtlSeconds);
+        }
+    }
+
+    @Override
+    public void save(String idempotencyKey, byte[] result, long ttlSeconds) {
+        try {
+            primary.save(idempotencyKey, result, ttlSeconds);
+            pendingResults.remove(idempotencyKey);
+        } catch (DataAccessException e) {
+            log.warn("Primary idempotency store unavailable, using fallback: {}", e.getMessage());
+            fallback.save(idempotencyKey, result, ttlSeconds);
+            pendingResults.put(idempotencyKey,
+                    new PendingResult(result, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds)));
+        }
+    }
+
+    /**
+     * Во время сбоя ключ мог быть зарезервирован в резервном хранилище, поэтому оно проверяется,
+     * если основное резерв не продлило.
+     */
+    @Override
+    public boolean renew(String idempotencyKey, long inFlightTtlSeconds) {
+        try {
+            if (primary.renew(idempotencyKey, inFlightTtlSeconds)) {
+                return true;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Primary idempotency store unavailable, using fallback: {}", e.getMessage());
+        }
+        return fallback.renew(idempotencyKey, inFlightTtlSeconds);
+    }
+
+    @Override
+    public void release(String idempotencyKey) {
+        try {
+            primary.release(idempotencyKey);
+        } catch (DataAccessException e) {
+            log.warn("Primary idempotency store unavailable, using fallback: {}", e.getMessage());
+        }
+        fallback.release(idempotencyKey);
+    }
+
+    /**
+     * Переносит в основное хранилище результаты, сохранённые в резервное во время сбоя.
+     * Исключение основного хранилища пробрасывается: вызывающий переключится на резервное.
+     */
+    private void replayPendingResults() {
+        if (pendingResults.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, PendingResult> entry : pendingResults.entrySet()) {
+            PendingResult pending = entry.getValue();
+            long remainingSeconds = TimeUnit.MILLISECONDS.toSeconds(pending.expiresAt() - now);
+            if (remainingSeconds > 0) {
+                primary.save(entry.getKey(), pending.result(), remainingSeconds);
+            }
+            pendingResults.remove(entry.getKey(), pending);
+        }
+    }
+
+    private record PendingResult(byte[] result, long expiresAt) {
+    }
+}
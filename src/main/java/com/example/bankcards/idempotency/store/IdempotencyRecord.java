@@ -0,0 +1,15 @@
+package com.example.bankcards.idempotency.store;
+
+/**
+ * Запись хранилища идемпотентности. result == null означает, что запрос с этим ключом ещё выполняется.
+ */
+public record IdempotencyRecord(byte[] result, long remainingTtlMillis) {
+
+    public static IdempotencyRecord inFlight() {
+        return new IdempotencyRecord(null, 0);
+    }
+
+    public boolean isInFlight() {
+        return result == null;
+    }
+}
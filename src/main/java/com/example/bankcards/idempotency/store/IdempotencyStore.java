@@ -0,0 +1,27 @@
+package com.example.bankcards.idempotency.store;
+
+/**
+ * Хранилище ключей идемпотентности. Реализации обязаны выполнять reserveOrGet атомарно:
+ * из параллельных запросов с одним ключом резерв получает только один.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Резервирует ключ на inFlightTtlSeconds или возвращает уже существующую запись.
+     * @return null, если ключ зарезервирован вызывающим; иначе сохранённый результат или запись "в процессе"
+     */
+    IdempotencyRecord reserveOrGet(String idempotencyKey, long inFlightTtlSeconds);
+
+    void save(String idempotencyKey, byte[] result, long ttlSeconds);
+
+    /**
+     * Продлевает резерв ключа на inFlightTtlSeconds, если результат по ключу ещё не сохранён
+     * @return false, если резерва уже нет: он истёк или снят
+     */
+    boolean renew(String idempotencyKey, long inFlightTtlSeconds);
+
+    /**
+     * Снимает резерв, если результат по ключу ещё не сохранён
+     */
+    void release(String idempotencyKey);
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.idempotency.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Хранилище ключей идемпотентности в таблице PostgreSQL idempotency_record.
+ * Резерв выполняется одним INSERT ... ON CONFLICT: строку получает только один из параллельных запросов,
+ * а просроченная запись перезаписывается новым резервом. Просроченные записи, которые больше никто не запросил,
+ * удаляет периодическая очистка пачками по idempotency.jdbc.cleanup-batch-size строк.
+ */
+@Slf4j
+@Component
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String RESERVE = """
+            INSERT INTO idempotency_record (idempotency_key, result, expires_at)
+            VALUES (?, NULL, now() + ? * INTERVAL '1 second')
+            ON CONFLICT (idempotency_key) DO UPDATE
+                SET result = NULL, expires_at = EXCLUDED.expires_at
+                WHERE idempotency_record.expires_at <= now()
+            RETURNING idempotency_key
+            """;
+
+    private static final String SELECT = """
+            SELECT result, CAST(EXTRACT(EPOCH FROM (expires_at - now())) * 1000 AS BIGINT) AS ttl_millis
+            FROM idempotency_record
+            WHERE idempotency_key = ? AND expires_at > now()
+            """;
+
+    private static final String SAVE = """
+            INSERT INTO idempotency_record (idempotency_key, result, expires_at)
+            VALUES (?, ?, now() + ? * INTERVAL '1 second')
+            ON CONFLICT (idempotency_key) DO UPDATE
+                SET result = EXCLUDED.result, expires_at = EXCLUDED.expires_at
+            """;
+
+    private static final String RENEW = """
+            UPDATE idempotency_record SET expires_at = now() + ? * INTERVAL '1 second'
+            WHERE idempotency_key = ? AND result IS NULL AND expires_at > now()
+            """;
+
+    private static final String RELEASE =
+            "DELETE FROM idempotency_record WHERE idempotency_key = ? AND result IS NULL";
+
+    private static final String DELETE_EXPIRED = """
+            DELETE FROM idempotency_record
+            WHERE idempotency_key IN (
+                SELECT idempotency_key FROM idempotency_record
+                WHERE expires_at < now()
+                LIMIT ?
+            )
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int cleanupBatchSize;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate,
+                                @Value("${idempotency.jdbc.cleanup-batch-size:1000}") int cleanupBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cleanupBatchSize = cleanupBatchSize;
+    }
+
+    @Override
+    public IdempotencyRecord reserveOrGet(String idempotencyKey, long inFlightTtlSeconds) {
+        List<String> reserved = jdbcTemplate.queryForList(RESERVE, String.class, idempotencyKey, inFlightTtlSeconds);
+        if (!reserved.isEmpty()) {
+            return null;
+        }
+
+        List<IdempotencyRecord> records = jdbcTemplate.query(SELECT,
+                (rs, rowNum) -> new IdempotencyRecord(rs.getBytes("result"), rs.getLong("ttl_millis")),
+                idempotencyKey);
+        // Запись могла истечь между запросами - вызывающий повторит попытку резерва
+        return records.isEmpty() ? IdempotencyRecord.inFlight() : records.get(0);
+    }
+
+    @Override
+    public void save(String idempotencyKey, byte[] result, long ttlSeconds) {
+        jdbcTemplate.update(SAVE, idempotencyKey, result, ttlSeconds);
+    }
+
+    @Override
+    public boolean renew(String idempotencyKey, long inFlightTtlSeconds) {
+        return jdbcTemplate.update(RENEW, inFlightTtlSeconds, idempotencyKey) == 1;
+    }
+
+    @Override
+    public void release(String idempotencyKey) {
+        jdbcTemplate.update(RELEASE, idempotencyKey);
+    }
+
+    /**
+     * Каждая пачка удаляется отдельным запросом, чтобы не держать долгую транзакцию и блокировки строк.
+     * @return число удалённых записей
+     */
+    @Scheduled(fixedDelayString = "${idempotency.jdbc.cleanup-interval-millis:60000}")
+    public int removeExpired() {
+        int removed = 0;
+        try {
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(DELETE_EXPIRED, cleanupBatchSize);
+                removed += deleted;
+            } while (deleted == cleanupBatchSize);
+        } catch (RuntimeException e) {
+            log.warn("Idempotency records cleanup failed", e);
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.bankcards.idempotency.store;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище ключей идемпотентности в памяти процесса: для узлов без Redis, тестов и как резерв при сбое Redis.
+ * Ключи распределены по шардам (отдельный ConcurrentHashMap на шард), просроченные записи удаляет
+ * таймерное колесо: каждую секунду проверяется только одна ячейка с ключами, срок которых выпадает на эту секунду.
+ */
+@Slf4j
+@Component
+public class LocalIdempotencyStore implements IdempotencyStore {
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final ConcurrentHashMap<String, LocalRecord>[] shards;
+    private final Set<String>[] wheel;
+    private final ScheduledExecutorService reaper;
+
+    @SuppressWarnings("unchecked")
+    public LocalIdempotencyStore(@Value("${idempotency.local.shards:16}") int shardCount) {
+        this.shards = new ConcurrentHashMap[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.wheel = new Set[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-local-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleAtFixedRate(this::reapCurrentSlot, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public IdempotencyRecord reserveOrGet(String idempotencyKey, long inFlightTtlSeconds) {
+        long now = System.currentTimeMillis();
+        LocalRecord reserved = new LocalRecord(null, now + TimeUnit.SECONDS.toMillis(inFlightTtlSeconds));
+
+        LocalRecord current = shard(idempotencyKey).compute(idempotencyKey,
+                (key, existing) -> existing != null && existing.expiresAt > now ? existing : reserved);
+
+        if (current == reserved) {
+            schedule(idempotencyKey, reserved.expiresAt);
+            return null;
+        }
+        return current.result == null
+                ? IdempotencyRecord.inFlight()
+                : new IdempotencyRecord(current.result, current.expiresAt - now);
+    }
+
+    @Override
+    public void save(String idempotencyKey, byte[] result, long ttlSeconds) {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds);
+        shard(idempotencyKey).put(idempotencyKey, new LocalRecord(result, expiresAt));
+        schedule(idempotencyKey, expiresAt);
+    }
+
+    @Override
+    public boolean renew(String idempotencyKey, long inFlightTtlSeconds) {
+        long now = System.currentTimeMillis();
+        LocalRecord renewed = new LocalRecord(null, now + TimeUnit.SECONDS.toMillis(inFlightTtlSeconds));
+
+        LocalRecord current = shard(idempotencyKey).computeIfPresent(idempotencyKey,
+                (key, existing) -> existing.result == null && existing.expiresAt > now ? renewed : existing);
+
+        if (current != renewed) {
+            return false;
+        }
+        schedule(idempotencyKey, renewed.expiresAt);
+        return true;
+    }
+
+    @Override
+    public void release(String idempotencyKey) {
+        shard(idempotencyKey).computeIfPresent(idempotencyKey,
+                (key, existing) -> existing.result == null ? null : existing);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+    }
+
+    private ConcurrentHashMap<String, LocalRecord> shard(String idempotencyKey) {
+        return shards[Math.floorMod(idempotencyKey.hashCode(), shards.length)];
+    }
+
+    private void schedule(String idempotencyKey, long expiresAt) {
+        wheel[slot(expiresAt)].add(idempotencyKey);
+    }
+
+    private static int slot(long timeMillis) {
+        return (int) (TimeUnit.MILLISECONDS.toSeconds(timeMillis) % WHEEL_SIZE);
+    }
+
+    /**
+     * Ключ остаётся в ячейке, если его срок выпадает на следующий оборот колеса,
+     * и убирается из неё, если запись перезаписана с другим сроком (она уже лежит в своей ячейке).
+     */
+    private void reapCurrentSlot() {
+        try {
+            long now = System.currentTimeMillis();
+            int currentSlot = slot(now);
+            wheel[currentSlot].removeIf(key -> {
+                ConcurrentHashMap<String, LocalRecord> shard = shard(key);
+                LocalRecord record = shard.get(key);
+                if (record == null) {
+                    return true;
+                }
+                if (record.expiresAt <= now) {
+                    shard.remove(key, record);
+                    return true;
+                }
+                return slot(record.expiresAt) != currentSlot;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Local idempotency store reaper failed", e);
+        }
+    }
+
+    private record LocalRecord(byte[] result, long expiresAt) {
+    }
+}
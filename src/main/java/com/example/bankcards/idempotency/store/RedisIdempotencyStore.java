@@ -0,0 +1,73 @@
+package com.example.bankcards.idempotency.store;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RequiredArgsConstructor
+@Component
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final byte[] IN_FLIGHT_MARKER = "\0IDEMPOTENCY_IN_FLIGHT".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * За один запрос к Redis: либо возвращает сохранённое значение ключа вместе с его PTTL,
+     * либо атомарно ставит маркер "запрос выполняется" и возвращает nil.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1]) " +
+            "if current then return {current, redis.call('PTTL', KEYS[1])} end " +
+            "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) " +
+            "return false", List.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('EXPIRE', KEYS[1], ARGV[2]) end " +
+            "return 0", Long.class);
+
+    private final RedisTemplate<String, byte[]> idempotencyRedisTemplate;
+
+    @Override
+    public IdempotencyRecord reserveOrGet(String idempotencyKey, long inFlightTtlSeconds) {
+        List<?> current = idempotencyRedisTemplate.execute(RESERVE_SCRIPT, List.of(KEY_PREFIX + idempotencyKey),
+                IN_FLIGHT_MARKER, String.valueOf(inFlightTtlSeconds).getBytes(StandardCharsets.UTF_8));
+
+        if (current == null || current.isEmpty()) {
+            return null;
+        }
+        byte[] value = (byte[]) current.get(0);
+        if (Arrays.equals(value, IN_FLIGHT_MARKER)) {
+            return IdempotencyRecord.inFlight();
+        }
+        return new IdempotencyRecord(value, (Long) current.get(1));
+    }
+
+    @Override
+    public void save(String idempotencyKey, byte[] result, long ttlSeconds) {
+        idempotencyRedisTemplate.opsForValue().set(KEY_PREFIX + idempotencyKey, result, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean renew(String idempotencyKey, long inFlightTtlSeconds) {
+        Long renewed = idempotencyRedisTemplate.execute(RENEW_SCRIPT, List.of(KEY_PREFIX + idempotencyKey),
+                IN_FLIGHT_MARKER, String.valueOf(inFlightTtlSeconds).getBytes(StandardCharsets.UTF_8));
+        return renewed != null && renewed == 1;
+    }
+
+    @Override
+    public void release(String idempotencyKey) {
+        idempotencyRedisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + idempotencyKey), IN_FLIGHT_MARKER);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.limit.store;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Переключение на резервное хранилище счётчиков, если основное недоступно (например, при сбое Redis).
+ * Резервные счётчики заполняются заново по таблице transaction при первом обращении к карте.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class FailoverSpendCounterStore implements SpendCounterStore {
+
+    private final SpendCounterStore primary;
+    private final SpendCounterStore fallback;
+
+    @Override
+    public SpendCheck tryAdd(String cardNumberHash, SpendPeriod period, long amount, long dailyLimit,
+                             long monthlyLimit) {
+        try {
+            return primary.tryAdd(cardNumberHash, period, amount, dailyLimit, monthlyLimit);
+        } catch (DataAccessException e) {
+            log.warn("Primary spend counter store unavailable, using fallback: {}", e.getMessage());
+            return fallback.tryAdd(cardNumberHash, period, amount, dailyLimit, monthlyLimit);
+        }
+    }
+
+    @Override
+    public void seed(String cardNumberHash, SpendPeriod period, long dailySpent, long monthlySpent) {
+        try {
+            primary.seed(cardNumberHash, period, dailySpent, monthlySpent);
+        } catch (DataAccessException e) {
+            log.warn("Primary spend counter store unavailable, using fallback: {}", e.getMessage());
+            fallback.seed(cardNumberHash, period, dailySpent, monthlySpent);
+        }
+    }
+
+    @Override
+    public void subtract(String cardNumberHash, SpendPeriod period, long amount) {
+        try {
+            primary.subtract(cardNumberHash, period, amount);
+        } catch (DataAccessException e) {
+            log.warn("Primary spend counter store unavailable, using fallback: {}", e.getMessage());
+            fallback.subtract(cardNumberHash, period, amount);
+        }
+    }
+}
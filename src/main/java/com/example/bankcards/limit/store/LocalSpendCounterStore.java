@@ -0,0 +1,91 @@
+package com.example.bankcards.limit.store;
+
+import com.example.bankcards.entity.enums.LimitType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счётчики расходов в памяти процесса: для узлов без Redis и как резерв при сбое Redis.
+ * Карты распределены по шардам (отдельный ConcurrentHashMap на шард), проверка и увеличение счётчиков карты
+ * выполняются в compute и блокируют только ячейку этой карты. Счётчики видны только своему узлу,
+ * поэтому при нескольких узлах лимит соблюдается на каждом узле по отдельности.
+ */
+@Component
+public class LocalSpendCounterStore implements SpendCounterStore {
+
+    private final ConcurrentHashMap<String, CardSpend>[] shards;
+
+    @SuppressWarnings("unchecked")
+    public LocalSpendCounterStore(@Value("${card.limits.local.shards:16}") int shardCount) {
+        this.shards = new ConcurrentHashMap[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    @Override
+    public SpendCheck tryAdd(String cardNumberHash, SpendPeriod period, long amount, long dailyLimit,
+                             long monthlyLimit) {
+        SpendCheck[] check = new SpendCheck[1];
+        shard(cardNumberHash).computeIfPresent(cardNumberHash, (key, spend) -> {
+            if (!spend.month.equals(period.month())) {
+                check[0] = SpendCheck.notSeeded();
+                return spend;
+            }
+            // Счётчик месяца ведётся с заполнения непрерывно, поэтому новый день начинается с нуля
+            long dailySpent = spend.day.equals(period.day()) ? spend.dailySpent : 0;
+            if (dailySpent + amount > dailyLimit) {
+                check[0] = SpendCheck.rejected(LimitType.DAILY, dailySpent);
+                return spend;
+            }
+            if (spend.monthlySpent + amount > monthlyLimit) {
+                check[0] = SpendCheck.rejected(LimitType.MONTHLY, spend.monthlySpent);
+                return spend;
+            }
+            check[0] = SpendCheck.accepted();
+            return new CardSpend(period.day(), dailySpent + amount, period.month(), spend.monthlySpent + amount);
+        });
+        return check[0] == null ? SpendCheck.notSeeded() : check[0];
+    }
+
+    @Override
+    public void seed(String cardNumberHash, SpendPeriod period, long dailySpent, long monthlySpent) {
+        CardSpend seeded = new CardSpend(period.day(), dailySpent, period.month(), monthlySpent);
+        shard(cardNumberHash).merge(cardNumberHash, seeded,
+                (existing, fresh) -> existing.month.equals(period.month()) ? existing : fresh);
+    }
+
+    @Override
+    public void subtract(String cardNumberHash, SpendPeriod period, long amount) {
+        shard(cardNumberHash).computeIfPresent(cardNumberHash, (key, spend) -> {
+            if (!spend.month.equals(period.month())) {
+                return spend;
+            }
+            long dailySpent = spend.day.equals(period.day()) ? spend.dailySpent - amount : spend.dailySpent;
+            return new CardSpend(spend.day, dailySpent, spend.month, spend.monthlySpent - amount);
+        });
+    }
+
+    /**
+     * Удаляет счётчики карт, по которым не было расходов в текущем месяце.
+     */
+    @Scheduled(fixedDelayString = "${card.limits.local.cleanup-interval-millis:3600000}")
+    public void removeStale() {
+        YearMonth currentMonth = YearMonth.now();
+        for (ConcurrentHashMap<String, CardSpend> shard : shards) {
+            shard.values().removeIf(spend -> !spend.month.equals(currentMonth));
+        }
+    }
+
+    private ConcurrentHashMap<String, CardSpend> shard(String cardNumberHash) {
+        return shards[Math.floorMod(cardNumberHash.hashCode(), shards.length)];
+    }
+
+    private record CardSpend(LocalDate day, long dailySpent, YearMonth month, long monthlySpent) {
+    }
+}
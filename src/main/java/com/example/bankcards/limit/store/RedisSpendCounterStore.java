@@ -0,0 +1,91 @@
+package com.example.bankcards.limit.store;
+
+import com.example.bankcards.entity.enums.LimitType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Счётчики расходов в Redis: по ключу на карту и день и на карту и месяц. Проверка лимитов и INCRBY обоих
+ * счётчиков выполняются одним скриптом, поэтому атомарны для всех узлов. Ключи живут немного дольше
+ * своего периода и удаляются Redis по TTL. Хэш карты в ключах - hash tag, чтобы в Redis Cluster оба ключа
+ * карты лежали в одном слоте и были доступны одному скрипту.
+ */
+@RequiredArgsConstructor
+@Component
+public class RedisSpendCounterStore implements SpendCounterStore {
+
+    private static final String KEY_PREFIX = "card-spend:";
+    private static final Duration DAY_TTL = Duration.ofDays(2);
+    private static final Duration MONTH_TTL = Duration.ofDays(32);
+
+    private static final long ACCEPTED = 0;
+    private static final long DAILY_EXHAUSTED = 1;
+    private static final long MONTHLY_EXHAUSTED = 2;
+    private static final long NOT_SEEDED = 3;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TRY_ADD_SCRIPT = new DefaultRedisScript<>(
+            "local daily = redis.call('GET', KEYS[1]) " +
+            "local monthly = redis.call('GET', KEYS[2]) " +
+            "if not daily or not monthly then return {3, 0} end " +
+            "local amount = tonumber(ARGV[1]) " +
+            "if tonumber(daily) + amount > tonumber(ARGV[2]) then return {1, tonumber(daily)} end " +
+            "if tonumber(monthly) + amount > tonumber(ARGV[3]) then return {2, tonumber(monthly)} end " +
+            "redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+            "redis.call('INCRBY', KEYS[2], ARGV[1]) " +
+            "return {0, 0}", List.class);
+
+    /**
+     * Уменьшает только существующие счётчики, чтобы не создать ключ без TTL.
+     */
+    private static final RedisScript<Long> SUBTRACT_SCRIPT = new DefaultRedisScript<>(
+            "for i, key in ipairs(KEYS) do " +
+            "if redis.call('EXISTS', key) == 1 then redis.call('DECRBY', key, ARGV[1]) end " +
+            "end " +
+            "return 0", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public SpendCheck tryAdd(String cardNumberHash, SpendPeriod period, long amount, long dailyLimit,
+                             long monthlyLimit) {
+        List<?> result = stringRedisTemplate.execute(TRY_ADD_SCRIPT, keys(cardNumberHash, period),
+                String.valueOf(amount), String.valueOf(dailyLimit), String.valueOf(monthlyLimit));
+
+        long status = (Long) result.get(0);
+        long spent = (Long) result.get(1);
+        if (status == ACCEPTED) {
+            return SpendCheck.accepted();
+        }
+        if (status == DAILY_EXHAUSTED) {
+            return SpendCheck.rejected(LimitType.DAILY, spent);
+        }
+        if (status == MONTHLY_EXHAUSTED) {
+            return SpendCheck.rejected(LimitType.MONTHLY, spent);
+        }
+        return SpendCheck.notSeeded();
+    }
+
+    @Override
+    public void seed(String cardNumberHash, SpendPeriod period, long dailySpent, long monthlySpent) {
+        List<String> keys = keys(cardNumberHash, period);
+        stringRedisTemplate.opsForValue().setIfAbsent(keys.get(0), String.valueOf(dailySpent), DAY_TTL);
+        stringRedisTemplate.opsForValue().setIfAbsent(keys.get(1), String.valueOf(monthlySpent), MONTH_TTL);
+    }
+
+    @Override
+    public void subtract(String cardNumberHash, SpendPeriod period, long amount) {
+        stringRedisTemplate.execute(SUBTRACT_SCRIPT, keys(cardNumberHash, period), String.valueOf(amount));
+    }
+
+    private List<String> keys(String cardNumberHash, SpendPeriod period) {
+        String cardKey = KEY_PREFIX + "{" + cardNumberHash + "}:";
+        return List.of(cardKey + period.day(), cardKey + period.month());
+    }
+}
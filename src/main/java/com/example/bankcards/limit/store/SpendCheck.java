@@ -0,0 +1,35 @@
+package com.example.bankcards.limit.store;
+
+import com.example.bankcards.entity.enums.LimitType;
+
+/**
+ * Результат попытки учесть расход.
+ * @param exhausted лимит, который расход превысил бы (только для REJECTED)
+ * @param spent уже учтённые расходы за период этого лимита (только для REJECTED)
+ */
+public record SpendCheck(Status status, LimitType exhausted, long spent) {
+
+    public enum Status {
+        ACCEPTED,
+        REJECTED,
+        /**
+         * Счётчиков карты за текущий период нет - их нужно заполнить по таблице transaction
+         */
+        NOT_SEEDED
+    }
+
+    private static final SpendCheck ACCEPTED = new SpendCheck(Status.ACCEPTED, null, 0);
+    private static final SpendCheck NOT_SEEDED = new SpendCheck(Status.NOT_SEEDED, null, 0);
+
+    public static SpendCheck accepted() {
+        return ACCEPTED;
+    }
+
+    public static SpendCheck notSeeded() {
+        return NOT_SEEDED;
+    }
+
+    public static SpendCheck rejected(LimitType exhausted, long spent) {
+        return new SpendCheck(Status.REJECTED, exhausted, spent);
+    }
+}
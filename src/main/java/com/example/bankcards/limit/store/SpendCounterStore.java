@@ -0,0 +1,25 @@
+package com.example.bankcards.limit.store;
+
+/**
+ * Счётчики расходов карты за день и за месяц. Суммы - в десятитысячных долях валюты (масштаб DECIMAL(19,4)),
+ * чтобы счётчики были целыми и не накапливали ошибку округления.
+ * Реализации обязаны выполнять tryAdd атомарно: проверка обоих лимитов и увеличение обоих счётчиков
+ * не разделяются параллельными расходами той же карты.
+ */
+public interface SpendCounterStore {
+
+    /**
+     * Учитывает расход, если он не превышает ни дневной, ни месячный лимит.
+     */
+    SpendCheck tryAdd(String cardNumberHash, SpendPeriod period, long amount, long dailyLimit, long monthlyLimit);
+
+    /**
+     * Заполняет отсутствующие счётчики периода; уже существующие не меняются.
+     */
+    void seed(String cardNumberHash, SpendPeriod period, long dailySpent, long monthlySpent);
+
+    /**
+     * Возвращает учтённый расход, если операция не выполнена.
+     */
+    void subtract(String cardNumberHash, SpendPeriod period, long amount);
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.limit.store;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Календарные день и месяц, к которым относится расход.
+ */
+public record SpendPeriod(LocalDate day, YearMonth month) {
+
+    public static SpendPeriod of(LocalDate date) {
+        return new SpendPeriod(date, YearMonth.from(date));
+    }
+}
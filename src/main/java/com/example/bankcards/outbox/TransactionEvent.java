@@ -0,0 +1,24 @@
+package com.example.bankcards.outbox;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Событие о записанной транзакции для внешних систем.
+ * @param eventId id строки outbox; доставка "хотя бы один раз", поэтому получатель отбрасывает повторы по eventId
+ */
+public record TransactionEvent(
+        Long eventId,
+        Long transactionId,
+        String type,
+        String status,
+        BigDecimal amount,
+        String currency,
+        Long sourceCardId,
+        Long targetCardId,
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        LocalDateTime occurredAt
+) {
+}
@@ -0,0 +1,153 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.outbox.sink.TransactionEventSink;
+import com.example.bankcards.repository.TransactionOutboxRepository;
+import com.example.bankcards.repository.TransactionOutboxRepository.ClaimedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Доставка событий из transaction_outbox в TransactionEventSink фоновыми обработчиками, вне запросов клиентов.
+ * Обработчиков parallelism, каждый забирает из своей доли карт до batch-size событий, доставляет их одним вызовом
+ * sink и только после этого забирает следующий пакет: в памяти не больше parallelism * batch-size событий,
+ * а медленный или недоступный получатель замедляет выборку, не накапливая очередь. Очередью служит таблица.
+ * При ошибке доставки пакет возвращается в таблицу с экспоненциальной задержкой (до max-backoff-millis),
+ * и обработчик ждёт столько же, поэтому события одной карты доставляются узлом по порядку.
+ * Включается свойством outbox.enabled; без него события копятся в таблице. Обработчики запускаются
+ * после инициализации контекста (и миграций) и останавливаются до закрытия источника данных.
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "outbox", name = "enabled", havingValue = "true")
+@Component
+public class TransactionOutboxRelay implements SmartLifecycle {
+
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final TransactionEventSink transactionEventSink;
+    private final int batchSize;
+    private final int parallelism;
+    private final long pollIntervalMillis;
+    private final long leaseSeconds;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private volatile ExecutorService workers;
+
+    public TransactionOutboxRelay(TransactionOutboxRepository transactionOutboxRepository,
+                                  TransactionEventSink transactionEventSink,
+                                  @Value("${outbox.batch-size:100}") int batchSize,
+                                  @Value("${outbox.parallelism:2}") int parallelism,
+                                  @Value("${outbox.poll-interval-millis:200}") long pollIntervalMillis,
+                                  @Value("${outbox.lease-seconds:30}") long leaseSeconds,
+                                  @Value("${outbox.initial-backoff-millis:1000}") long initialBackoffMillis,
+                                  @Value("${outbox.max-backoff-millis:60000}") long maxBackoffMillis) {
+        this.transactionOutboxRepository = transactionOutboxRepository;
+        this.transactionEventSink = transactionEventSink;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.leaseSeconds = leaseSeconds;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (workers != null) {
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService started = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "transaction-outbox-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int shard = 0; shard < parallelism; shard++) {
+            int workerShard = shard;
+            started.execute(() -> run(workerShard));
+        }
+        workers = started;
+    }
+
+    /**
+     * Прерывает ожидание обработчиков и ждёт, пока они завершат текущий пакет: незавершённый пакет
+     * не теряется, а будет забран снова по истечении аренды.
+     */
+    @Override
+    public synchronized void stop() {
+        if (workers == null) {
+            return;
+        }
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Transaction outbox relay did not stop in {} s", STOP_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return workers != null;
+    }
+
+    private void run(int shard) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long pause;
+                try {
+                    pause = relayBatch(shard);
+                } catch (RuntimeException e) {
+                    log.warn("Transaction outbox relay {} failed", shard, e);
+                    pause = maxBackoffMillis;
+                }
+                if (pause > 0) {
+                    Thread.sleep(pause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Доставляет один пакет доли shard.
+     * @return сколько ждать до следующего пакета, мс: 0 - в доле остались события
+     */
+    long relayBatch(int shard) {
+        List<ClaimedEvent> claimed = transactionOutboxRepository.claim(shard, parallelism, batchSize, leaseSeconds);
+        if (claimed.isEmpty()) {
+            return pollIntervalMillis;
+        }
+        List<TransactionEvent> events = claimed.stream().map(ClaimedEvent::event).toList();
+        List<Long> eventIds = events.stream().map(TransactionEvent::eventId).toList();
+        try {
+            transactionEventSink.publish(events);
+        } catch (RuntimeException e) {
+            int attempts = claimed.stream().mapToInt(ClaimedEvent::attempts).max().orElse(1);
+            long backoff = backoffMillis(attempts);
+            log.warn("Failed to publish {} transaction events, attempt {}, retry in {} ms",
+                    events.size(), attempts, backoff, e);
+            transactionOutboxRepository.retryLater(eventIds, backoff);
+            return backoff;
+        }
+        transactionOutboxRepository.delete(eventIds);
+        return claimed.size() < batchSize ? pollIntervalMillis : 0;
+    }
+
+    private long backoffMillis(int attempts) {
+        return Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 20));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bankcards.outbox.sink;
+
+import com.example.bankcards.outbox.TransactionEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Дописывает события в файл в формате NDJSON, по одному JSON-объекту на строку.
+ * Пакет записывается одним вызовом под блокировкой и сбрасывается на диск до подтверждения,
+ * поэтому пакеты разных потоков не перемешиваются, а подтверждённые события не теряются при сбое.
+ */
+public class FileTransactionEventSink implements TransactionEventSink, AutoCloseable {
+
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+
+    public FileTransactionEventSink(ObjectMapper objectMapper, Path path) {
+        this.objectMapper = objectMapper;
+        try {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open transaction event file " + path, e);
+        }
+    }
+
+    @Override
+    public void publish(List<TransactionEvent> events) {
+        try {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            for (TransactionEvent event : events) {
+                lines.write(objectMapper.writeValueAsBytes(event));
+                lines.write('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            synchronized (channel) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.bankcards.outbox.sink;
+
+import com.example.bankcards.outbox.TransactionEvent;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Отправляет пакет событий одним POST-запросом с JSON-массивом. Ответ не 2xx считается ошибкой доставки.
+ */
+public class HttpTransactionEventSink implements TransactionEventSink {
+
+    private final RestClient restClient;
+
+    public HttpTransactionEventSink(RestClient.Builder restClientBuilder, String url, Duration timeout) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = restClientBuilder.baseUrl(url).requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public void publish(List<TransactionEvent> events) {
+        restClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(events)
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.bankcards.outbox.sink;
+
+import com.example.bankcards.outbox.TransactionEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хранит доставленные события в памяти процесса - для тестов и локального запуска без внешних систем.
+ */
+public class InMemoryTransactionEventSink implements TransactionEventSink {
+
+    private final List<TransactionEvent> events = new ArrayList<>();
+
+    @Override
+    public synchronized void publish(List<TransactionEvent> batch) {
+        events.addAll(batch);
+    }
+
+    public synchronized List<TransactionEvent> events() {
+        return List.copyOf(events);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.outbox.sink;
+
+import com.example.bankcards.outbox.TransactionEvent;
+
+import java.util.List;
+
+/**
+ * Получатель событий о транзакциях. publish вызывается обработчиками outbox вне транзакций БД,
+ * параллельно из нескольких потоков (каждый со своей долей карт).
+ * Пакет считается доставленным, только если publish завершился без исключения; иначе весь пакет
+ * будет доставлен повторно, поэтому получатель должен отбрасывать повторы по eventId.
+ */
+public interface TransactionEventSink {
+
+    void publish(List<TransactionEvent> events);
+}
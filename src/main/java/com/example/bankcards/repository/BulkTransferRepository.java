@@ -0,0 +1,118 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.entity.operations.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JDBC-доступ для пакетных переводов: блокировка всех карт пакета одним запросом в порядке id,
+ * пакетное обновление балансов и пакетная вставка транзакций.
+ */
+@RequiredArgsConstructor
+@Repository
+public class BulkTransferRepository {
+
+    private static final String LOCK_CARDS = """
+            SELECT c.id, c.card_number_hash, c.card_status, c.card_balance, c.balance_slots,
+                   COALESCE(c.owner_id = (SELECT cu.id FROM customer cu WHERE cu.email = ?), false) AS owned
+            FROM card c
+            WHERE c.card_number_hash = ANY (?)
+            ORDER BY c.id
+            FOR UPDATE OF c
+            """;
+
+    private static final String UPDATE_BALANCE =
+            "UPDATE card SET card_balance = ?, version = version + 1, updated_at = now() WHERE id = ?";
+
+    /**
+     * Как pooled-lo у Hibernate: каждое значение последовательности открывает диапазон из ID_ALLOCATION_SIZE id.
+     */
+    private static final String NEXT_TRANSACTION_IDS = """
+            SELECT block.lo + offs.n
+            FROM (SELECT nextval('transaction_main_sequence') AS lo FROM generate_series(1, ?)) block
+            CROSS JOIN generate_series(0, ? - 1) AS offs(n)
+            ORDER BY 1
+            LIMIT ?
+            """;
+
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transaction (id, amount, currency, transaction_status, transaction_type,
+                                     source_card_id, target_card_id, created_at, updated_at, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, now(), now(), 0)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Принадлежность карт клиенту вычисляется в том же запросе, владельцы не загружаются.
+     * @return заблокированные карты в виде не управляемых JPA сущностей: изменения в них не сбрасываются Hibernate
+     */
+    public List<LockedCard> lockCards(Collection<String> cardNumberHashes, String email) {
+        return jdbcTemplate.query(LOCK_CARDS, (rs, rowNum) -> {
+            Card card = new Card();
+            card.setId(rs.getLong("id"));
+            card.setCardNumberHash(rs.getString("card_number_hash"));
+            card.setStatus(CardStatus.fromString(rs.getString("card_status")));
+            card.setBalance(rs.getBigDecimal("card_balance"));
+            card.setBalanceSlots(rs.getInt("balance_slots"));
+            return new LockedCard(card, rs.getBoolean("owned"));
+        }, email, cardNumberHashes.toArray(String[]::new));
+    }
+
+    public void updateBalances(Collection<Card> cards) {
+        jdbcTemplate.batchUpdate(UPDATE_BALANCE, cards, cards.size(), (ps, card) -> {
+            ps.setBigDecimal(1, card.getBalance());
+            ps.setLong(2, card.getId());
+        });
+    }
+
+    /**
+     * Вставляет переводы одним пакетом.
+     * @return id вставленных транзакций в порядке transfers
+     */
+    public List<Long> insertTransfers(List<TransferRow> transfers) {
+        int blocks = (transfers.size() + Transaction.ID_ALLOCATION_SIZE - 1) / Transaction.ID_ALLOCATION_SIZE;
+        List<Long> ids = jdbcTemplate.queryForList(NEXT_TRANSACTION_IDS, Long.class,
+                blocks, Transaction.ID_ALLOCATION_SIZE, transfers.size());
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TransferRow transfer = transfers.get(i);
+                ps.setLong(1, ids.get(i));
+                ps.setBigDecimal(2, transfer.amount());
+                ps.setString(3, transfer.currency());
+                ps.setString(4, TransactionStatus.SUCCESS.name());
+                ps.setString(5, TransactionType.TRANSFER.name());
+                ps.setLong(6, transfer.sourceCardId());
+                ps.setLong(7, transfer.targetCardId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return transfers.size();
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * @param owned карта принадлежит клиенту, выполняющему пакет
+     */
+    public record LockedCard(Card card, boolean owned) {
+    }
+
+    public record TransferRow(long sourceCardId, long targetCardId, BigDecimal amount, String currency) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.bankcards.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Слоты баланса горячей карты (таблица card_balance_slot). Каждое изменение - один UPDATE по первичному ключу,
+ * поэтому блокируется только строка слота, а не строка карты.
+ */
+@RequiredArgsConstructor
+@Repository
+public class CardBalanceSlotRepository {
+
+    private static final String CREATE_SLOTS = """
+            INSERT INTO card_balance_slot (card_id, slot, balance)
+            SELECT ?, slot, 0 FROM generate_series(0, ? - 1) AS slot
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String DELETE_SLOTS = """
+            DELETE FROM card_balance_slot WHERE card_id = ?
+            RETURNING balance
+            """;
+
+    private static final String CREDIT =
+            "UPDATE card_balance_slot SET balance = balance + ? WHERE card_id = ? AND slot = ?";
+
+    private static final String CREDIT_CARD_BALANCE =
+            "UPDATE card SET card_balance = card_balance + ?, version = version + 1 WHERE id = ?";
+
+    private static final String DEBIT =
+            "UPDATE card_balance_slot SET balance = balance - ? WHERE card_id = ? AND slot = ? AND balance >= ?";
+
+    private static final String SUM_BALANCE =
+            "SELECT COALESCE(SUM(balance), 0) FROM card_balance_slot WHERE card_id = ?";
+
+    private static final String FIND_FUNDED_SLOTS = """
+            SELECT slot, balance FROM card_balance_slot
+            WHERE card_id = ? AND balance > 0
+            ORDER BY balance DESC
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createSlots(long cardId, int slots) {
+        jdbcTemplate.update(CREATE_SLOTS, cardId, slots);
+    }
+
+    /**
+     * @return сумма балансов удалённых слотов
+     */
+    public BigDecimal deleteSlots(long cardId) {
+        return jdbcTemplate.queryForList(DELETE_SLOTS, BigDecimal.class, cardId).stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public boolean credit(long cardId, int slot, BigDecimal amount) {
+        return jdbcTemplate.update(CREDIT, amount, cardId, slot) == 1;
+    }
+
+    /**
+     * Зачисление на card_balance, когда слота уже нет. UPDATE блокирует строку карты до коммита и увеличивает version,
+     * чтобы запись карты с проверкой версии, прочитавшая старый баланс, не затёрла зачисление.
+     */
+    public void creditCardBalance(long cardId, BigDecimal amount) {
+        if (jdbcTemplate.update(CREDIT_CARD_BALANCE, amount, cardId) != 1) {
+            throw new IllegalStateException("Card " + cardId + " not found for balance credit");
+        }
+    }
+
+    /**
+     * Списывает сумму со слота, только если баланса слота хватает.
+     */
+    public boolean debit(long cardId, int slot, BigDecimal amount) {
+        return jdbcTemplate.update(DEBIT, amount, cardId, slot, amount) == 1;
+    }
+
+    public BigDecimal sumBalance(long cardId) {
+        return jdbcTemplate.queryForObject(SUM_BALANCE, BigDecimal.class, cardId);
+    }
+
+    public List<SlotBalance> findFundedSlots(long cardId) {
+        return jdbcTemplate.query(FIND_FUNDED_SLOTS,
+                (rs, rowNum) -> new SlotBalance(rs.getInt("slot"), rs.getBigDecimal("balance")), cardId);
+    }
+
+    public record SlotBalance(int slot, BigDecimal balance) {
+    }
+}
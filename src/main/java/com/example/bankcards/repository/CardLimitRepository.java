@@ -0,0 +1,45 @@
+package com.example.bankcards.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Лимиты расходов по карте (таблица card_limit).
+ */
+@RequiredArgsConstructor
+@Repository
+public class CardLimitRepository {
+
+    private static final String UPSERT = """
+            INSERT INTO card_limit (card_id, daily_limit, monthly_limit, updated_at)
+            VALUES (?, ?, ?, now())
+            ON CONFLICT (card_id) DO UPDATE
+            SET daily_limit = EXCLUDED.daily_limit, monthly_limit = EXCLUDED.monthly_limit, updated_at = now()
+            """;
+
+    private static final String FIND_BY_CARD_NUMBER_HASH = """
+            SELECT l.daily_limit, l.monthly_limit
+            FROM card_limit l
+            JOIN card c ON c.id = l.card_id
+            WHERE c.card_number_hash = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void upsert(long cardId, BigDecimal dailyLimit, BigDecimal monthlyLimit) {
+        jdbcTemplate.update(UPSERT, cardId, dailyLimit, monthlyLimit);
+    }
+
+    public Optional<CardLimit> findByCardNumberHash(String cardNumberHash) {
+        return jdbcTemplate.query(FIND_BY_CARD_NUMBER_HASH,
+                (rs, rowNum) -> new CardLimit(rs.getBigDecimal("daily_limit"), rs.getBigDecimal("monthly_limit")),
+                cardNumberHash).stream().findFirst();
+    }
+
+    public record CardLimit(BigDecimal dailyLimit, BigDecimal monthlyLimit) {
+    }
+}
@@ -2,27 +2,108 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.projection.CardView;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
 
-    Page<Card> findByCustomerId(Long customerId, Pageable pageable);
+    @Query(value = """
+            SELECT new com.example.bankcards.repository.projection.CardView(
+                c.cardNumber, cu.name, c.expiryDate, c.status, c.totalBalance, c.currency)
+            FROM Card c JOIN c.customer cu
+            WHERE cu.id = :customerId
+            """,
+            countQuery = "SELECT COUNT(c) FROM Card c WHERE c.customer.id = :customerId")
+    Page<CardView> findViewsByCustomerId(@Param("customerId") Long customerId, Pageable pageable);
 
-    Page<Card> findByCustomerIdAndStatus(Long customerId, CardStatus status, Pageable pageable);
+    @Query(value = """
+            SELECT new com.example.bankcards.repository.projection.CardView(
+                c.cardNumber, cu.name, c.expiryDate, c.status, c.totalBalance, c.currency)
+            FROM Card c JOIN c.customer cu
+            WHERE cu.id = :customerId AND c.status = :status
+            """,
+            countQuery = "SELECT COUNT(c) FROM Card c WHERE c.customer.id = :customerId AND c.status = :status")
+    Page<CardView> findViewsByCustomerIdAndStatus(@Param("customerId") Long customerId,
+                                                  @Param("status") CardStatus status, Pageable pageable);
+
+    /**
+     * Карта клиента: принадлежность проверяется в WHERE, владелец не загружается.
+     */
+    @Query(value = """
+            SELECT new com.example.bankcards.repository.projection.CardView(
+                c.cardNumber, cu.name, c.expiryDate, c.status, c.totalBalance, c.currency)
+            FROM Card c JOIN c.customer cu
+            WHERE c.cardNumberHash = :cardNumberHash AND cu.email = :email
+            """)
+    Optional<CardView> findViewByCardNumberHashAndCustomerEmail(@Param("cardNumberHash") String cardNumberHash,
+                                                                @Param("email") String email);
+
+    @Query(value = "SELECT c.id FROM Card c WHERE c.cardNumberHash = :cardNumberHash AND c.customer.email = :email")
+    Optional<Long> findIdByCardNumberHashAndCustomerEmail(@Param("cardNumberHash") String cardNumberHash,
+                                                          @Param("email") String email);
+
+    Optional<Card> findByCardNumberHashAndCustomerEmail(String cardNumberHash, String email);
+
+    @Query(value = "SELECT c.id FROM Card c WHERE c.cardNumberHash = :cardNumberHash")
+    Optional<Long> findIdByCardNumberHash(@Param("cardNumberHash") String cardNumberHash);
 
     @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query(value = "SELECT c FROM Card c WHERE c.cardNumber = :encryptedCardNumber")
-    Optional<Card> findByCardNumberWithLock(@Param("encryptedCardNumber") String cardNumber);
+    @Query(value = "SELECT c FROM Card c WHERE c.cardNumberHash = :cardNumberHash")
+    Optional<Card> findByCardNumberHashWithLock(@Param("cardNumberHash") String cardNumberHash);
+
+    /**
+     * Карта клиента с блокировкой. Владелец проверяется подзапросом, а не соединением:
+     * блокируется только строка карты, клиент не загружается.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = """
+            SELECT c FROM Card c
+            WHERE c.cardNumberHash = :cardNumberHash
+              AND c.customer.id = (SELECT cu.id FROM Customer cu WHERE cu.email = :email)
+            """)
+    Optional<Card> findByCardNumberHashAndCustomerEmailWithLock(@Param("cardNumberHash") String cardNumberHash,
+                                                                @Param("email") String email);
+
+    /**
+     * Карта без загрузки владельца, для зачислений на чужую карту.
+     */
+    @Query(value = "SELECT c FROM Card c WHERE c.cardNumberHash = :cardNumberHash")
+    Optional<Card> findByCardNumberHashWithoutCustomer(@Param("cardNumberHash") String cardNumberHash);
+
+    /**
+     * Блокировка нескольких карт одним запросом. Строки блокируются в порядке id,
+     * поэтому встречные переводы A->B и B->A не могут взаимно заблокироваться.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "SELECT c FROM Card c WHERE c.cardNumberHash IN :cardNumberHashes ORDER BY c.id")
+    List<Card> findAllByCardNumberHashInWithLock(@Param("cardNumberHashes") Collection<String> cardNumberHashes);
+
+    List<Card> findAllByCardNumberHashInOrderById(Collection<String> cardNumberHashes);
+
+    @Query(value = "SELECT c.balanceSlots FROM Card c WHERE c.cardNumberHash = :cardNumberHash")
+    Optional<Integer> findBalanceSlotsByCardNumberHash(@Param("cardNumberHash") String cardNumberHash);
+
+    /**
+     * Ограничение ожидания блокировки строк для текущей транзакции (PostgreSQL lock_timeout)
+     */
+    @Query(value = "SELECT set_config('lock_timeout', :lockTimeout, true)", nativeQuery = true)
+    String setLockTimeout(@Param("lockTimeout") String lockTimeout);
+
+    @EntityGraph(attributePaths = "customer")
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
 
-    Optional<Card> findByCardNumber(String cardNumber);
+    boolean existsByCardNumberHash(String cardNumberHash);
 }
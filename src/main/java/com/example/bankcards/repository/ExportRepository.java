@@ -0,0 +1,81 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transaction.TransactionExportResponse;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение всех карт и транзакций для выгрузки. PostgreSQL отдаёт строки порциями по fetch-size
+ * через серверный курсор, только если запрос выполняется внутри транзакции (autocommit выключен),
+ * поэтому методы нужно вызывать из @Transactional. Строки передаются обработчику по одной и не копятся в памяти.
+ */
+@Repository
+public class ExportRepository {
+
+    private static final String SELECT_CARDS = """
+            SELECT c.card_number, cu.name AS card_holder, c.expiry_date, c.card_status, c.currency,
+                   c.card_balance + CASE WHEN c.balance_slots > 0 THEN
+                       (SELECT COALESCE(SUM(s.balance), 0) FROM card_balance_slot s WHERE s.card_id = c.id)
+                   ELSE 0 END AS balance
+            FROM card c
+            JOIN customer cu ON cu.id = c.owner_id
+            ORDER BY c.id
+            """;
+
+    private static final String SELECT_TRANSACTIONS = """
+            SELECT id, amount, currency, transaction_status, transaction_type,
+                   source_card_id, target_card_id, created_at
+            FROM transaction
+            ORDER BY id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExportRepository(DataSource dataSource, @Value("${card.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void forEachCard(Consumer<CardRow> consumer) {
+        jdbcTemplate.query(SELECT_CARDS, rs -> {
+            consumer.accept(new CardRow(
+                    rs.getString("card_number"),
+                    rs.getString("card_holder"),
+                    rs.getObject("expiry_date", LocalDate.class),
+                    CardStatus.fromString(rs.getString("card_status")),
+                    rs.getBigDecimal("balance"),
+                    rs.getString("currency")));
+        });
+    }
+
+    public void forEachTransaction(Consumer<TransactionExportResponse> consumer) {
+        jdbcTemplate.query(SELECT_TRANSACTIONS, rs -> {
+            consumer.accept(new TransactionExportResponse(
+                    rs.getLong("id"),
+                    rs.getBigDecimal("amount"),
+                    rs.getString("currency"),
+                    TransactionStatus.fromString(rs.getString("transaction_status")).name(),
+                    TransactionType.fromString(rs.getString("transaction_type")).name(),
+                    rs.getLong("source_card_id"),
+                    rs.getObject("target_card_id", Long.class),
+                    rs.getObject("created_at", LocalDateTime.class)));
+        });
+    }
+
+    /**
+     * @param cardNumber номер карты в зашифрованном виде, как он хранится в БД
+     */
+    public record CardRow(String cardNumber, String cardHolder, LocalDate expiryDate, CardStatus status,
+                          BigDecimal balance, String currency) {
+    }
+}
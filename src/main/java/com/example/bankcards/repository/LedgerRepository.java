@@ -0,0 +1,90 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.enums.LedgerAccount;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Журнал проводок (ledger_entry) и снимки балансов карт (card_balance_snapshot).
+ * Проводки только добавляются; id берётся из общей последовательности и поэтому монотонно растёт для каждой карты.
+ * Баланс карты = снимок + сумма проводок с id больше last_entry_id снимка.
+ */
+@RequiredArgsConstructor
+@Repository
+public class LedgerRepository {
+
+    private static final String APPEND = """
+            INSERT INTO ledger_entry (id, transaction_id, card_id, account, amount)
+            VALUES (nextval('ledger_entry_sequence'), ?, ?, ?, ?)
+            """;
+
+    private static final String LOCK_CARD_FOR_SNAPSHOT = "SELECT id FROM card WHERE id = ? FOR UPDATE";
+
+    private static final String LOCK_SLOTS_FOR_SNAPSHOT =
+            "SELECT slot FROM card_balance_slot WHERE card_id = ? ORDER BY slot FOR UPDATE";
+
+    private static final String SNAPSHOT = """
+            INSERT INTO card_balance_snapshot (card_id, balance, last_entry_id, snapshot_at)
+            SELECT CAST(? AS BIGINT), COALESCE(MAX(s.balance), 0) + COALESCE(SUM(e.amount), 0),
+                   GREATEST(COALESCE(MAX(s.last_entry_id), 0), COALESCE(MAX(e.id), 0)), now()
+            FROM (SELECT CAST(? AS BIGINT) AS card_id) c
+            LEFT JOIN card_balance_snapshot s ON s.card_id = c.card_id
+            LEFT JOIN ledger_entry e ON e.card_id = c.card_id AND e.id > COALESCE(s.last_entry_id, 0)
+            ON CONFLICT (card_id) DO UPDATE
+                SET balance = EXCLUDED.balance, last_entry_id = EXCLUDED.last_entry_id, snapshot_at = EXCLUDED.snapshot_at
+            RETURNING balance
+            """;
+
+    private static final String BALANCE = """
+            SELECT COALESCE(s.balance, 0)
+                   + COALESCE((SELECT SUM(e.amount) FROM ledger_entry e
+                               WHERE e.card_id = c.card_id AND e.id > COALESCE(s.last_entry_id, 0)), 0)
+            FROM (SELECT CAST(? AS BIGINT) AS card_id) c
+            LEFT JOIN card_balance_snapshot s ON s.card_id = c.card_id
+            """;
+
+    private static final String FIND_CARDS_WITH_NEW_ENTRIES = """
+            SELECT DISTINCT e.card_id FROM ledger_entry e
+            LEFT JOIN card_balance_snapshot s ON s.card_id = e.card_id
+            WHERE e.card_id IS NOT NULL AND e.id > COALESCE(s.last_entry_id, 0)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void append(List<LedgerLeg> legs) {
+        jdbcTemplate.batchUpdate(APPEND, legs, legs.size(), (ps, leg) -> {
+            ps.setObject(1, leg.transactionId());
+            ps.setObject(2, leg.cardId());
+            ps.setString(3, leg.account().name());
+            ps.setBigDecimal(4, leg.amount());
+        });
+    }
+
+    /**
+     * Сворачивает новые проводки карты в её снимок. Блокирует строку карты и её слоты до конца транзакции.
+     * Операция пишет проводки после изменения баланса карты или слота в той же транзакции, то есть уже
+     * держа одну из этих строк, поэтому отдельная блокировка при записи проводок не нужна: снимок дождётся
+     * коммита начатых операций, а следующие получат id больше last_entry_id снимка.
+     * @return баланс карты по журналу на момент снимка
+     */
+    public BigDecimal snapshot(long cardId) {
+        jdbcTemplate.queryForList(LOCK_CARD_FOR_SNAPSHOT, Long.class, cardId);
+        jdbcTemplate.queryForList(LOCK_SLOTS_FOR_SNAPSHOT, Integer.class, cardId);
+        return jdbcTemplate.queryForObject(SNAPSHOT, BigDecimal.class, cardId, cardId);
+    }
+
+    public BigDecimal balance(long cardId) {
+        return jdbcTemplate.queryForObject(BALANCE, BigDecimal.class, cardId);
+    }
+
+    public List<Long> findCardsWithNewEntries() {
+        return jdbcTemplate.queryForList(FIND_CARDS_WITH_NEW_ENTRIES, Long.class);
+    }
+
+    public record LedgerLeg(Long transactionId, Long cardId, LedgerAccount account, BigDecimal amount) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.enums.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Накопленные расходы карт за день (card_spend_daily) и за месяц (card_spend_monthly) по типу операции.
+ * Строки увеличиваются в транзакции операции, поэтому расход за период читается одной-тремя строками
+ * по первичному ключу вместо агрегации истории transaction.
+ */
+@RequiredArgsConstructor
+@Repository
+public class SpendRollupRepository {
+
+    private static final String ADD_DAILY = """
+            INSERT INTO card_spend_daily (card_id, day, transaction_type, amount, operations)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (card_id, day, transaction_type) DO UPDATE
+            SET amount = card_spend_daily.amount + EXCLUDED.amount,
+                operations = card_spend_daily.operations + EXCLUDED.operations
+            """;
+
+    private static final String ADD_MONTHLY = """
+            INSERT INTO card_spend_monthly (card_id, month, transaction_type, amount, operations)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (card_id, month, transaction_type) DO UPDATE
+            SET amount = card_spend_monthly.amount + EXCLUDED.amount,
+                operations = card_spend_monthly.operations + EXCLUDED.operations
+            """;
+
+    private static final String SUM_DAILY = """
+            SELECT COALESCE(SUM(s.amount), 0)
+            FROM card_spend_daily s
+            JOIN card c ON c.id = s.card_id
+            WHERE c.card_number_hash = ? AND s.day = ?
+            """;
+
+    private static final String SUM_MONTHLY = """
+            SELECT COALESCE(SUM(s.amount), 0)
+            FROM card_spend_monthly s
+            JOIN card c ON c.id = s.card_id
+            WHERE c.card_number_hash = ? AND s.month = ?
+            """;
+
+    private static final String FIND_DAILY = """
+            SELECT transaction_type, amount, operations FROM card_spend_daily
+            WHERE card_id = ? AND day = ?
+            ORDER BY transaction_type
+            """;
+
+    private static final String FIND_MONTHLY = """
+            SELECT transaction_type, amount, operations FROM card_spend_monthly
+            WHERE card_id = ? AND month = ?
+            ORDER BY transaction_type
+            """;
+
+    private static final RowMapper<SpendTotal> SPEND_TOTAL = (rs, rowNum) -> new SpendTotal(
+            TransactionType.valueOf(rs.getString("transaction_type")),
+            rs.getBigDecimal("amount"),
+            rs.getLong("operations"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Прибавляет расходы к дневным и месячным строкам. Строки пишутся в порядке (card_id, transaction_type),
+     * чтобы пакеты по нескольким картам не взаимоблокировались.
+     */
+    public void add(List<SpendRow> rows) {
+        List<SpendRow> sorted = rows.stream()
+                .sorted((a, b) -> a.cardId() != b.cardId()
+                        ? Long.compare(a.cardId(), b.cardId())
+                        : a.type().compareTo(b.type()))
+                .toList();
+        jdbcTemplate.batchUpdate(ADD_DAILY, sorted, sorted.size(), (ps, row) -> {
+            ps.setLong(1, row.cardId());
+            ps.setDate(2, Date.valueOf(row.day()));
+            ps.setString(3, row.type().name());
+            ps.setBigDecimal(4, row.amount());
+            ps.setLong(5, row.operations());
+        });
+        jdbcTemplate.batchUpdate(ADD_MONTHLY, sorted, sorted.size(), (ps, row) -> {
+            ps.setLong(1, row.cardId());
+            ps.setDate(2, Date.valueOf(YearMonth.from(row.day()).atDay(1)));
+            ps.setString(3, row.type().name());
+            ps.setBigDecimal(4, row.amount());
+            ps.setLong(5, row.operations());
+        });
+    }
+
+    public BigDecimal sumSpentOn(String cardNumberHash, LocalDate day) {
+        return jdbcTemplate.queryForObject(SUM_DAILY, BigDecimal.class, cardNumberHash, Date.valueOf(day));
+    }
+
+    public BigDecimal sumSpentIn(String cardNumberHash, YearMonth month) {
+        return jdbcTemplate.queryForObject(SUM_MONTHLY, BigDecimal.class, cardNumberHash,
+                Date.valueOf(month.atDay(1)));
+    }
+
+    public List<SpendTotal> findDaily(long cardId, LocalDate day) {
+        return jdbcTemplate.query(FIND_DAILY, SPEND_TOTAL, cardId, Date.valueOf(day));
+    }
+
+    public List<SpendTotal> findMonthly(long cardId, YearMonth month) {
+        return jdbcTemplate.query(FIND_MONTHLY, SPEND_TOTAL, cardId, Date.valueOf(month.atDay(1)));
+    }
+
+    public record SpendRow(long cardId, LocalDate day, TransactionType type, BigDecimal amount, long operations) {
+    }
+
+    public record SpendTotal(TransactionType type, BigDecimal amount, long operations) {
+    }
+}
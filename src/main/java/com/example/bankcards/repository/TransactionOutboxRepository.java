@@ -0,0 +1,98 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.outbox.TransactionEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Таблица transaction_outbox. Строка забирается арендой: claim сдвигает available_at на время доставки,
+ * поэтому доставка идёт вне транзакции БД, а строки упавшего узла снова становятся доступны по истечении аренды.
+ */
+@RequiredArgsConstructor
+@Repository
+public class TransactionOutboxRepository {
+
+    private static final String APPEND = """
+            INSERT INTO transaction_outbox (id, transaction_id, transaction_type, transaction_status, amount, currency,
+                                            source_card_id, target_card_id, occurred_at)
+            VALUES (nextval('transaction_outbox_sequence'), ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    /**
+     * SKIP LOCKED: параллельные обработчики и узлы не ждут друг друга и не забирают одни и те же строки.
+     * Строки делятся между обработчиками по карте-источнику, чтобы события одной карты доставлялись по порядку.
+     */
+    private static final String CLAIM = """
+            UPDATE transaction_outbox o
+            SET available_at = now() + make_interval(secs => ?), attempts = o.attempts + 1
+            WHERE o.id IN (
+                SELECT id FROM transaction_outbox
+                WHERE available_at <= now() AND mod(source_card_id, ?) = ?
+                ORDER BY id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            RETURNING o.id, o.transaction_id, o.transaction_type, o.transaction_status, o.amount, o.currency,
+                      o.source_card_id, o.target_card_id, o.occurred_at, o.attempts
+            """;
+
+    private static final String DELETE = "DELETE FROM transaction_outbox WHERE id = ANY (?)";
+
+    private static final String RETRY_LATER =
+            "UPDATE transaction_outbox SET available_at = now() + make_interval(secs => ? / 1000.0) WHERE id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param events события без eventId: он выдаётся последовательностью
+     */
+    public void append(List<TransactionEvent> events) {
+        jdbcTemplate.batchUpdate(APPEND, events, events.size(), (ps, event) -> {
+            ps.setLong(1, event.transactionId());
+            ps.setString(2, event.type());
+            ps.setString(3, event.status());
+            ps.setBigDecimal(4, event.amount());
+            ps.setString(5, event.currency());
+            ps.setLong(6, event.sourceCardId());
+            ps.setObject(7, event.targetCardId());
+            ps.setTimestamp(8, Timestamp.valueOf(event.occurredAt()));
+        });
+    }
+
+    /**
+     * Забирает до limit доступных строк своей доли и арендует их на leaseSeconds.
+     * @return события в порядке eventId
+     */
+    public List<ClaimedEvent> claim(int shard, int shards, int limit, long leaseSeconds) {
+        List<ClaimedEvent> claimed = jdbcTemplate.query(CLAIM, (rs, rowNum) -> new ClaimedEvent(
+                new TransactionEvent(
+                        rs.getLong("id"),
+                        rs.getLong("transaction_id"),
+                        rs.getString("transaction_type"),
+                        rs.getString("transaction_status"),
+                        rs.getBigDecimal("amount"),
+                        rs.getString("currency"),
+                        rs.getLong("source_card_id"),
+                        rs.getObject("target_card_id", Long.class),
+                        rs.getObject("occurred_at", LocalDateTime.class)),
+                rs.getInt("attempts")), leaseSeconds, shards, shard, limit);
+        return claimed.stream().sorted(Comparator.comparing(claimedEvent -> claimedEvent.event().eventId())).toList();
+    }
+
+    public void delete(Collection<Long> eventIds) {
+        jdbcTemplate.update(DELETE, (Object) eventIds.toArray(Long[]::new));
+    }
+
+    public void retryLater(Collection<Long> eventIds, long delayMillis) {
+        jdbcTemplate.update(RETRY_LATER, delayMillis, eventIds.toArray(Long[]::new));
+    }
+
+    public record ClaimedEvent(TransactionEvent event, int attempts) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bankcards.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Месячные секции таблицы transaction (transaction_YYYY_MM, диапазон created_at [1-е число, 1-е число следующего месяца)).
+ * Отсоединённые секции переносятся в схему transaction_archive и перестают участвовать в запросах к transaction.
+ */
+@RequiredArgsConstructor
+@Repository
+public class TransactionPartitionRepository {
+
+    public static final String ARCHIVE_SCHEMA = "transaction_archive";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("transaction_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    /**
+     * Обслуживание секций на разных узлах не должно пересекаться; блокировка снимается с концом транзакции.
+     */
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_xact_lock(hashtext('transaction_partitions'))";
+
+    private static final String SET_LOCK_TIMEOUT = "SELECT set_config('lock_timeout', ?, true)";
+
+    private static final String CREATE_PARTITION =
+            "CREATE TABLE IF NOT EXISTS %s PARTITION OF transaction FOR VALUES FROM ('%s') TO ('%s')";
+
+    private static final String FIND_PARTITIONS = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            JOIN pg_namespace n ON n.oid = p.relnamespace
+            WHERE p.relname = 'transaction' AND n.nspname = current_schema()
+            ORDER BY c.relname
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(TRY_LOCK, Boolean.class));
+    }
+
+    public void createPartition(YearMonth month) {
+        jdbcTemplate.execute(CREATE_PARTITION.formatted(partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+
+    /**
+     * @return месяцы присоединённых секций по возрастанию
+     */
+    public List<YearMonth> findPartitions() {
+        return jdbcTemplate.queryForList(FIND_PARTITIONS, String.class).stream()
+                .map(PARTITION_NAME::matcher)
+                .filter(Matcher::matches)
+                .map(matcher -> YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))))
+                .toList();
+    }
+
+    /**
+     * Отсоединяет секцию месяца и переносит её в схему архива.
+     * DETACH ждёт исключительную блокировку transaction, а все вставки встают в очередь за ним,
+     * поэтому ожидание ограничено lockTimeout: при долгой транзакции на таблице отсоединение отменяется
+     * с ошибкой и повторяется в следующий запуск, а не останавливает запись.
+     * @param tablespace табличное пространство холодного хранения, null - оставить текущее
+     * @param lockTimeout значение lock_timeout PostgreSQL для текущей транзакции, например "2s"
+     */
+    public void archivePartition(YearMonth month, String tablespace, String lockTimeout) {
+        String partition = partitionName(month);
+        jdbcTemplate.queryForObject(SET_LOCK_TIMEOUT, String.class, lockTimeout);
+        jdbcTemplate.execute("ALTER TABLE transaction DETACH PARTITION " + partition);
+        jdbcTemplate.execute("ALTER TABLE " + partition + " SET SCHEMA " + ARCHIVE_SCHEMA);
+        if (tablespace != null) {
+            jdbcTemplate.execute("ALTER TABLE " + ARCHIVE_SCHEMA + "." + partition + " SET TABLESPACE " + tablespace);
+        }
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "transaction_" + month.format(PARTITION_SUFFIX);
+    }
+}
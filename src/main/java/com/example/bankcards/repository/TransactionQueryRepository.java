@@ -0,0 +1,132 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transaction.TransactionCursor;
+import com.example.bankcards.dto.transaction.TransactionFilter;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.TransactionDirection;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.entity.operations.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * История операций карты с фильтрами страницами по (created_at, id). Условия фильтра попадают в SQL,
+ * поэтому клиенту отдаются только нужные строки:
+ * исходящие читаются по индексу (source_card_id, created_at, id), входящие - по (target_card_id, created_at, id);
+ * без направления обе ветки читаются по своим индексам с лимитом и сливаются через UNION ALL.
+ * Период и курсор ограничивают created_at, поэтому планировщик отбрасывает месячные секции вне диапазона.
+ */
+@RequiredArgsConstructor
+@Repository
+public class TransactionQueryRepository {
+
+    private static final String COLUMNS = """
+            SELECT id, amount, currency, transaction_status, transaction_type,
+                   source_card_id, target_card_id, created_at, updated_at, version
+            FROM transaction
+            """;
+
+    private static final String OUTGOING = "source_card_id = ?";
+
+    private static final String INCOMING = "target_card_id = ?";
+
+    private static final String ORDER_AND_LIMIT = " ORDER BY created_at, id LIMIT ?";
+
+    private static final RowMapper<Transaction> TRANSACTION = (rs, rowNum) -> {
+        Transaction transaction = new Transaction();
+        transaction.setId(rs.getLong("id"));
+        transaction.setAmount(rs.getBigDecimal("amount"));
+        transaction.setCurrency(rs.getString("currency"));
+        transaction.setTransactionStatus(TransactionStatus.fromString(rs.getString("transaction_status")));
+        transaction.setTransactionType(TransactionType.fromString(rs.getString("transaction_type")));
+        transaction.setSourceCard(cardReference(rs.getLong("source_card_id")));
+        transaction.setTargetCard(cardReference(rs.getObject("target_card_id", Long.class)));
+        transaction.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        transaction.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        transaction.setVersion(rs.getInt("version"));
+        return transaction;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param cursor null для первой страницы
+     * @return не управляемые JPA транзакции в порядке (createdAt, id); у карт заполнен только id
+     */
+    public List<Transaction> findPage(long cardId, TransactionFilter filter, TransactionCursor cursor, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        if (filter.direction() != null) {
+            appendBranch(sql, args, filter.direction() == TransactionDirection.OUT ? OUTGOING : INCOMING,
+                    cardId, filter, cursor, limit);
+        } else {
+            sql.append("SELECT * FROM ((");
+            appendBranch(sql, args, OUTGOING, cardId, filter, cursor, limit);
+            sql.append(") UNION ALL (");
+            // Перевод на ту же карту уже попал в исходящие
+            appendBranch(sql, args, INCOMING + " AND source_card_id <> target_card_id", cardId, filter, cursor, limit);
+            sql.append(")) t").append(ORDER_AND_LIMIT);
+            args.add(limit);
+        }
+        return jdbcTemplate.query(sql.toString(), TRANSACTION, args.toArray());
+    }
+
+    /**
+     * @param cardCondition условие на карту с одним параметром - id карты
+     */
+    private void appendBranch(StringBuilder sql, List<Object> args, String cardCondition, long cardId,
+                              TransactionFilter filter, TransactionCursor cursor, int limit) {
+        sql.append(COLUMNS).append("WHERE ").append(cardCondition);
+        args.add(cardId);
+        if (filter.from() != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(filter.to()));
+        }
+        if (cursor != null) {
+            // Отдельное условие на created_at нужно для отсечения секций: по сравнению кортежей они не отсекаются
+            sql.append(" AND created_at >= ? AND (created_at, id) > (?, ?)");
+            args.add(Timestamp.valueOf(cursor.createdAt()));
+            args.add(Timestamp.valueOf(cursor.createdAt()));
+            args.add(cursor.id());
+        }
+        if (filter.type() != null) {
+            sql.append(" AND transaction_type = ?");
+            args.add(filter.type().name());
+        }
+        if (filter.status() != null) {
+            sql.append(" AND transaction_status = ?");
+            args.add(filter.status().name());
+        }
+        if (filter.minAmount() != null) {
+            sql.append(" AND amount >= ?");
+            args.add(filter.minAmount());
+        }
+        if (filter.maxAmount() != null) {
+            sql.append(" AND amount <= ?");
+            args.add(filter.maxAmount());
+        }
+        sql.append(ORDER_AND_LIMIT);
+        args.add(limit);
+    }
+
+    private static Card cardReference(Long cardId) {
+        if (cardId == null) {
+            return null;
+        }
+        Card card = new Card();
+        card.setId(cardId);
+        return card;
+    }
+}
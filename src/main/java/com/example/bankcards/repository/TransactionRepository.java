@@ -1,18 +1,9 @@
 package com.example.bankcards.repository;
 
-import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.operations.Transaction;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-
-
-    List<Transaction> findBySourceCard(Card card);
-
-    List<Transaction> findBySourceCard(Card card, Pageable pageable);
 }
@@ -0,0 +1,21 @@
+package com.example.bankcards.repository.projection;
+
+import com.example.bankcards.entity.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Поля карты для CardResponse, читаемые одним запросом вместе с именем владельца.
+ * @param cardNumber расшифрованный номер карты
+ * @param balance card_balance вместе с остатками слотов горячей карты
+ */
+public record CardView(
+        String cardNumber,
+        String cardHolder,
+        LocalDate expiryDate,
+        CardStatus status,
+        BigDecimal balance,
+        String currency
+) {
+}
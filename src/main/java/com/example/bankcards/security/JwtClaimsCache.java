@@ -0,0 +1,76 @@
+package com.example.bankcards.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш проверенных claims JWT. Ключ - SHA-256 от токена, запись живёт до expiration токена,
+ * поэтому повторные запросы с тем же токеном не проверяют HMAC-подпись заново.
+ */
+@Component
+public class JwtClaimsCache {
+
+    private final int maxSize;
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(JwtClaimsCache::newDigest);
+
+    private final Map<String, CachedClaims> entries;
+
+    public JwtClaimsCache(@Value("${jwt.cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedClaims> eldest) {
+                return size() > JwtClaimsCache.this.maxSize;
+            }
+        };
+    }
+
+    public Claims get(String token) {
+        String key = tokenHash(token);
+        synchronized (entries) {
+            CachedClaims cached = entries.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return cached.claims;
+        }
+    }
+
+    public void put(String token, Claims claims) {
+        if (claims.getExpiration() == null) {
+            return;
+        }
+        String key = tokenHash(token);
+        synchronized (entries) {
+            entries.put(key, new CachedClaims(claims, claims.getExpiration().getTime()));
+        }
+    }
+
+    private String tokenHash(String token) {
+        byte[] digest = sha256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CachedClaims(Claims claims, long expiresAt) {
+    }
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.security;
 
 import com.example.bankcards.entity.app_class.*;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -15,15 +16,18 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
-    private final String secretKey;
+    private final SecretKey signingKey;
+    private final JwtParser jwtParser;
+    private final JwtClaimsCache claimsCache;
 
-    public JwtUtil(@Value("${jwt.secret}") String secretKey) {
-        this.secretKey = secretKey;
+    public JwtUtil(@Value("${jwt.secret}") String secretKey, JwtClaimsCache claimsCache) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.jwtParser = Jwts.parser().verifyWith(signingKey).build();
+        this.claimsCache = claimsCache;
     }
 
     public String generateToken(CustomerDetails customerDetails) {
@@ -41,54 +45,37 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(Date.from(ZonedDateTime.now().plusMinutes(60).toInstant()))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    private SecretKey getSigningKey() {
-
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
-    }
-
     public String extractUsername(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return extractAllClaims(token).getSubject();
     }
 
     public List<String> extractRoles(String token) {
-        Claims claims = extractAllClaims(token);
-        return (List<String>) claims.get("roles");
+        return extractRoles(extractAllClaims(token));
     }
 
-    public boolean isTokenValid(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public List<String> extractRoles(Claims claims) {
+        return (List<String>) claims.get("roles");
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public boolean isTokenValid(String token, String username) {
+        Claims claims = extractAllClaims(token);
+        return claims.getSubject().equals(username) && claims.getExpiration().after(new Date());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * Проверка подписи и срока действия токена. Результат кэшируется до expiration,
+     * повторный вызов с тем же токеном не разбирает его заново.
+     */
+    public Claims extractAllClaims(String token) {
+        Claims claims = claimsCache.get(token);
+        if (claims == null) {
+            claims = jwtParser.parseSignedClaims(token).getPayload();
+            claimsCache.put(token, claims);
+        }
+        return claims;
     }
 }
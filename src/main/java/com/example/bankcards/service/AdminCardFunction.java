@@ -1,16 +1,23 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.card.*;
-import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.dto.transaction.TransactionCursor;
+import com.example.bankcards.dto.transaction.TransactionExportResponse;
+import com.example.bankcards.dto.transaction.TransactionPageResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.entity.mapper.CardMapper;
 import com.example.bankcards.entity.mapper.TransactionMapper;
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.exception.card.CardBalanceNotZeroException;
+import com.example.bankcards.exception.card.CardClosedException;
 import com.example.bankcards.exception.card.CardWithNumberAlreadyExistsException;
 import com.example.bankcards.exception.card.CardWithNumberNoExistsException;
 import com.example.bankcards.exception.customer.CustomerNotFoundException;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.ExportRepository;
+import com.example.bankcards.repository.TransactionQueryRepository;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
 import com.example.bankcards.util.CardNumberEncryptorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +26,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -28,22 +36,26 @@ public class AdminCardFunction {
     private final CardRepository cardRepository;
     private final CustomerService customerService;
     private final CardMapper cardMapper;
-    private final TransactionRepository transactionRepository;
+    private final TransactionQueryRepository transactionQueryRepository;
     private final TransactionMapper transactionMapper;
-    private final IdempotencyService idempotencyService;
-    private final long TIME_LIFE_RECORD_DB = 3600;
     private final CardNumberEncryptorUtil cardEncryptorUtil;
+    private final CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+    private final HotCardBalanceService hotCardBalanceService;
+    private final ExportRepository exportRepository;
+    private final CardLimitService cardLimitService;
 
 
     @Transactional
-    public CardResponse createCard(CreateCardRequest createCardDto, String idempotencyKey) {
+    public CardResponse createCard(CreateCardRequest createCardDto) {
 
-        if(cardRepository.findByCardNumber(createCardDto.cardNumber()).isPresent()) {
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(createCardDto.cardNumber());
+        if(cardRepository.existsByCardNumberHash(cardNumberHash)) {
             throw new CardWithNumberAlreadyExistsException(createCardDto.cardNumber());
         }
         Card card = new Card();
 
         card.setCardNumber(createCardDto.cardNumber());
+        card.setCardNumberHash(cardNumberHash);
 
         card.setCustomer(customerService.findCustomerByEmail(createCardDto.cardOwner())
                 .orElseThrow(()-> new CustomerNotFoundException(createCardDto.cardOwner())));
@@ -54,65 +66,130 @@ public class AdminCardFunction {
         card.setCurrency("RUB");
 
         CardResponse response = cardMapper.toCardResponse(cardRepository.save(card));
-        idempotencyService.saveIdempotencyKey(idempotencyKey, response, TIME_LIFE_RECORD_DB);
 
         return response;
     }
 
+    @Transactional
     public CardResponse updateCard(UpdateCardRequest updateDto) {
-        Card card = cardRepository.findByCardNumber(updateDto.cardNumber())
+        Card card = cardRepository
+                .findByCardNumberHash(cardNumberBlindIndexUtil.hashCardNumber(updateDto.cardNumber()))
                 .orElseThrow(()-> new CardWithNumberNoExistsException(updateDto.cardNumber()));
 
+        String newCardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(updateDto.newCardNumber());
+        if (!newCardNumberHash.equals(card.getCardNumberHash()) && cardRepository.existsByCardNumberHash(newCardNumberHash)) {
+            throw new CardWithNumberAlreadyExistsException(updateDto.newCardNumber());
+        }
         card.setCardNumber(updateDto.newCardNumber());
+        card.setCardNumberHash(newCardNumberHash);
         card.setExpiryDate(updateDto.newExpiryDate());
 
-        return cardMapper.toCardResponse(cardRepository.save(card));
+        CardResponse response = cardMapper.toCardResponse(cardRepository.save(card));
+        return response;
     }
 
     @Transactional
-    public String blockCard(BlockCardRequest blockCardDto, String idempotencyKey) {
-        Card card = cardRepository.findByCardNumber(blockCardDto.cardNumber())
+    public String blockCard(BlockCardRequest blockCardDto) {
+        Card card = cardRepository
+                .findByCardNumberHash(cardNumberBlindIndexUtil.hashCardNumber(blockCardDto.cardNumber()))
                 .orElseThrow(()-> new CardWithNumberNoExistsException(blockCardDto.cardNumber()));
+        if (card.getStatus() == CardStatus.CLOSED) {
+            throw new CardClosedException(blockCardDto.cardNumber());
+        }
         card.setStatus(CardStatus.BLOCKED);
         cardRepository.save(card);
 
         String response = "Card blocked";
-        idempotencyService.saveIdempotencyKey(idempotencyKey, response, TIME_LIFE_RECORD_DB);
         return response;
     }
 
     @Transactional
-    public String activateCard(ActivateCardRequest activateCardDto, String idempotencyKey) {
-        Card card = cardRepository.findByCardNumber(activateCardDto.cardNumber())
+    public String activateCard(ActivateCardRequest activateCardDto) {
+        Card card = cardRepository
+                .findByCardNumberHash(cardNumberBlindIndexUtil.hashCardNumber(activateCardDto.cardNumber()))
                 .orElseThrow(()-> new CardWithNumberNoExistsException(activateCardDto.cardNumber()));
+        if (card.getStatus() == CardStatus.CLOSED) {
+            throw new CardClosedException(activateCardDto.cardNumber());
+        }
         card.setStatus(CardStatus.ACTIVE);
         cardRepository.save(card);
 
         String response = "Card activated successfully";
-        idempotencyService.saveIdempotencyKey(idempotencyKey, response, TIME_LIFE_RECORD_DB);
         return response;
     }
 
     @Transactional
-    public String deleteCard(DeleteCardRequest deleteCardDto, String idempotencyKey) {
-        Card card = cardRepository.findByCardNumber(deleteCardDto.cardNumber())
+    public String setHotBalanceSlots(SetHotBalanceSlotsRequest hotBalanceDto) {
+        Card card = cardRepository
+                .findByCardNumberHashWithLock(cardNumberBlindIndexUtil.hashCardNumber(hotBalanceDto.cardNumber()))
+                .orElseThrow(()-> new CardWithNumberNoExistsException(hotBalanceDto.cardNumber()));
+
+        hotCardBalanceService.resize(card, hotBalanceDto.slots());
+        cardRepository.save(card);
+
+        String response = "Card balance slots set to " + hotBalanceDto.slots();
+        return response;
+    }
+
+    public String setLimits(SetLimitsForCardRequest limitsDto) {
+        return cardLimitService.setLimits(limitsDto);
+    }
+
+    /**
+     * Удаление карты - её закрытие: строка карты остаётся, поэтому проводки журнала, исходящие и входящие
+     * транзакции продолжают ссылаться на существующую карту, а журнал остаётся сбалансированным.
+     * Закрытая карта не участвует в операциях и не может быть снова активирована, поэтому карта с ненулевым
+     * балансом (card_balance вместе со слотами горячей карты) не закрывается: деньги клиента остались бы недоступны.
+     */
+    @Transactional
+    public String deleteCard(DeleteCardRequest deleteCardDto) {
+        Card card = cardRepository
+                .findByCardNumberHashWithLock(cardNumberBlindIndexUtil.hashCardNumber(deleteCardDto.cardNumber()))
                 .orElseThrow(()-> new CardWithNumberNoExistsException(deleteCardDto.cardNumber()));
+        if (hotCardBalanceService.availableBalance(card).signum() != 0) {
+            throw new CardBalanceNotZeroException(deleteCardDto.cardNumber());
+        }
 
-        cardRepository.deleteById(card.getId());
-        String response = "Card deleted";
-        idempotencyService.saveIdempotencyKey(idempotencyKey, response, TIME_LIFE_RECORD_DB);
+        card.setStatus(CardStatus.CLOSED);
+        cardRepository.save(card);
+        String response = "Card closed";
         return response;
     }
 
+    /**
+     * Выгрузка всех карт: строки читаются курсором и передаются в sink по одной, номер карты расшифровывается
+     * только для маскирования и мимо кэша расшифрованных номеров, чтобы выгрузка не вытесняла из него рабочие карты.
+     */
+    @Transactional(readOnly = true)
+    public void exportCards(Consumer<CardResponse> sink) {
+        exportRepository.forEachCard(row -> sink.accept(new CardResponse(
+                cardMapper.convertCardNumberToMask(cardEncryptorUtil.decryptCardNumber(row.cardNumber())),
+                row.cardHolder(),
+                row.expiryDate(),
+                row.status().name(),
+                row.balance(),
+                row.currency())));
+    }
+
+    /**
+     * Выгрузка всех транзакций в порядке id, строки передаются в sink по одной.
+     */
     @Transactional(readOnly = true)
-    public List<CardResponse> getAllCards() {
-        return cardRepository.findAll().stream().map(cardMapper::toCardResponse).toList();
+    public void exportTransactions(Consumer<TransactionExportResponse> sink) {
+        exportRepository.forEachTransaction(sink);
     }
 
+    /**
+     * @param cursor nextCursor предыдущей страницы, null для первой
+     */
     @Transactional(readOnly = true)
-    public List<TransactionResponse> getCardTransactions(ShowTransactionalByCardRequest cardDto) {
-        Card card = cardRepository.findByCardNumber(cardDto.cardNumber())
+    public TransactionPageResponse getCardTransactions(ShowTransactionalByCardRequest cardDto, String cursor, int size) {
+        TransactionPageResponse.checkSize(size);
+        Long cardId = cardRepository
+                .findIdByCardNumberHash(cardNumberBlindIndexUtil.hashCardNumber(cardDto.cardNumber()))
                 .orElseThrow(()-> new CardWithNumberNoExistsException(cardDto.cardNumber()));
-        return transactionRepository.findBySourceCard(card).stream().map(transactionMapper::toTransactionResponse).toList();
+        List<Transaction> rows = transactionQueryRepository
+                .findPage(cardId, cardDto.filter(), TransactionCursor.decode(cursor), size + 1);
+        return TransactionPageResponse.of(rows, size, transactionMapper::toTransactionResponse);
     }
 }
@@ -0,0 +1,174 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.BulkTransferItemResponse;
+import com.example.bankcards.dto.card.BulkTransferItemResponse.Status;
+import com.example.bankcards.dto.card.TransferFundsBetweenUserCardsRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.LedgerAccount;
+import com.example.bankcards.exception.card.CardBlockedException;
+import com.example.bankcards.exception.card.CardWithNumberNoExistsException;
+import com.example.bankcards.exception.card.InsufficientFundsException;
+import com.example.bankcards.exception.card.LimitExhaustedException;
+import com.example.bankcards.exception.customer.NoAccessToOtherDataException;
+import com.example.bankcards.repository.BulkTransferRepository;
+import com.example.bankcards.repository.BulkTransferRepository.LockedCard;
+import com.example.bankcards.repository.BulkTransferRepository.TransferRow;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerRepository;
+import com.example.bankcards.repository.LedgerRepository.LedgerLeg;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Часть пакетного перевода в одной транзакции: все карты части блокируются одним запросом в порядке id,
+ * переводы проверяются (включая лимиты расходов) и применяются в памяти по очереди, затем балансы,
+ * транзакции, проводки и накопленные расходы записываются пакетными JDBC-запросами.
+ */
+@RequiredArgsConstructor
+@Service
+public class BulkTransferService {
+
+    private final BulkTransferRepository bulkTransferRepository;
+    private final CardRepository cardRepository;
+    private final LedgerRepository ledgerRepository;
+    private final HotCardBalanceService hotCardBalanceService;
+    private final CardLimitService cardLimitService;
+    private final SpendRollupService spendRollupService;
+    private final TransactionOutboxService transactionOutboxService;
+    private final CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+
+    @Value("${card.lock-timeout:3s}")
+    private String lockTimeout;
+
+    /**
+     * @param offset индекс первого перевода части в исходном пакете
+     */
+    @Transactional
+    public List<BulkTransferItemResponse> transferChunk(List<TransferFundsBetweenUserCardsRequest> transfers,
+                                                        int offset, String email) {
+        Map<String, String> hashes = new HashMap<>();
+        transfers.forEach(transfer -> {
+            hashes.computeIfAbsent(transfer.fromCardNumber(), cardNumberBlindIndexUtil::hashCardNumber);
+            hashes.computeIfAbsent(transfer.toCardNumber(), cardNumberBlindIndexUtil::hashCardNumber);
+        });
+
+        cardRepository.setLockTimeout(lockTimeout);
+        Map<String, LockedCard> cards = bulkTransferRepository.lockCards(new TreeSet<>(hashes.values()), email).stream()
+                .collect(Collectors.toMap(locked -> locked.card().getCardNumberHash(), Function.identity()));
+
+        BulkTransferItemResponse[] results = new BulkTransferItemResponse[transfers.size()];
+        Map<Long, Card> changedCards = new LinkedHashMap<>();
+        List<TransferRow> applied = new ArrayList<>();
+        List<Integer> appliedIndexes = new ArrayList<>();
+
+        List<CardLimitService.Reservation> reservations = new ArrayList<>();
+        releaseOnRollback(reservations);
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferFundsBetweenUserCardsRequest transfer = transfers.get(i);
+            CardLimitService.Reservation reservation = CardLimitService.Reservation.NONE;
+            try {
+                LockedCard lockedFrom = findCard(cards, hashes, transfer.fromCardNumber());
+                // До резерва лимита, чтобы отказ по лимиту не раскрывал лимиты чужой карты
+                if (!lockedFrom.owned()) {
+                    throw new NoAccessToOtherDataException();
+                }
+                Card cardFrom = lockedFrom.card();
+                Card cardTo = findCard(cards, hashes, transfer.toCardNumber()).card();
+                reservation = cardLimitService.reserve(cardFrom.getCardNumberHash(), transfer.amount());
+                apply(cardFrom, cardTo, transfer.amount());
+                reservations.add(reservation);
+
+                changedCards.put(cardFrom.getId(), cardFrom);
+                changedCards.put(cardTo.getId(), cardTo);
+                applied.add(new TransferRow(cardFrom.getId(), cardTo.getId(), transfer.amount(), transfer.currency()));
+                appliedIndexes.add(i);
+            } catch (InsufficientFundsException | CardBlockedException | CardWithNumberNoExistsException
+                     | NoAccessToOtherDataException | LimitExhaustedException e) {
+                cardLimitService.release(reservation);
+                results[i] = new BulkTransferItemResponse(offset + i, Status.REJECTED, null, e.getMessage());
+            }
+        }
+
+        if (!applied.isEmpty()) {
+            bulkTransferRepository.updateBalances(changedCards.values());
+            List<Long> transactionIds = bulkTransferRepository.insertTransfers(applied);
+
+            List<LedgerLeg> legs = new ArrayList<>(applied.size() * 2);
+            for (int i = 0; i < applied.size(); i++) {
+                TransferRow row = applied.get(i);
+                Long transactionId = transactionIds.get(i);
+                legs.add(new LedgerLeg(transactionId, row.sourceCardId(), LedgerAccount.CARD, row.amount().negate()));
+                legs.add(new LedgerLeg(transactionId, row.targetCardId(), LedgerAccount.CARD, row.amount()));
+
+                int index = appliedIndexes.get(i);
+                results[index] = new BulkTransferItemResponse(offset + index, Status.SUCCESS, transactionId, null);
+            }
+            ledgerRepository.append(legs);
+            spendRollupService.recordTransfers(applied);
+            transactionOutboxService.recordTransfers(applied, transactionIds);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Расходы применённых переводов остаются учтёнными в счётчиках лимитов, только если часть закоммичена.
+     */
+    private void releaseOnRollback(List<CardLimitService.Reservation> reservations) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    reservations.forEach(cardLimitService::release);
+                }
+            }
+        });
+    }
+
+    private LockedCard findCard(Map<String, LockedCard> cards, Map<String, String> hashes, String cardNumber) {
+        LockedCard card = cards.get(hashes.get(cardNumber));
+        if (card == null) {
+            throw new CardWithNumberNoExistsException(cardNumber);
+        }
+        return card;
+    }
+
+    private void apply(Card cardFrom, Card cardTo, BigDecimal amount) {
+        if (cardFrom.getStatus() != CardStatus.ACTIVE || cardTo.getStatus() != CardStatus.ACTIVE) {
+            throw new CardBlockedException();
+        }
+
+        if (hotCardBalanceService.isHot(cardFrom)) {
+            hotCardBalanceService.debit(cardFrom, amount);
+        } else if (cardFrom.getBalance().compareTo(amount) < 0) {
+            throw new InsufficientFundsException();
+        } else {
+            cardFrom.setBalance(cardFrom.getBalance().subtract(amount));
+        }
+
+        if (hotCardBalanceService.isHot(cardTo)) {
+            hotCardBalanceService.credit(cardTo, amount);
+        } else {
+            cardTo.setBalance(cardTo.getBalance().add(amount));
+        }
+    }
+}
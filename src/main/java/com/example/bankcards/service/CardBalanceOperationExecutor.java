@@ -0,0 +1,85 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.card.CardLockTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Выполняет операцию с балансом карты в отдельной транзакции.
+ * card.concurrency.mode = pessimistic - карты блокируются SELECT ... FOR UPDATE на всё время транзакции.
+ * card.concurrency.mode = optimistic - карты читаются без блокировки, конфликт определяется проверкой @Version
+ * при записи; операция повторяется с экспоненциальной задержкой со случайным разбросом, а после max-attempts
+ * конфликтов выполняется с пессимистическими блокировками.
+ * card.group-commit.enabled - операции выполняются пакетами через CardOperationGroupCommitter.
+ */
+@Slf4j
+@Component
+public class CardBalanceOperationExecutor {
+
+    public enum LockMode {
+        PESSIMISTIC,
+        OPTIMISTIC
+    }
+
+    private final TransactionTemplate transactionTemplate;
+    private final CardOperationGroupCommitter groupCommitter;
+    private final boolean optimistic;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public CardBalanceOperationExecutor(TransactionTemplate transactionTemplate,
+                                        CardOperationGroupCommitter groupCommitter,
+                                        @Value("${card.concurrency.mode:pessimistic}") String mode,
+                                        @Value("${card.concurrency.optimistic.max-attempts:3}") int maxAttempts,
+                                        @Value("${card.concurrency.optimistic.backoff-millis:5}") long backoffMillis) {
+        this.transactionTemplate = transactionTemplate;
+        this.groupCommitter = groupCommitter;
+        this.optimistic = switch (mode) {
+            case "pessimistic" -> false;
+            case "optimistic" -> true;
+            default -> throw new IllegalArgumentException("Unknown card concurrency mode: " + mode);
+        };
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * @param cardNumberHashes карты, которые операция будет менять
+     */
+    public <T> T execute(Collection<String> cardNumberHashes, Function<LockMode, T> operation) {
+        if (groupCommitter.isEnabled()) {
+            return groupCommitter.submit(cardNumberHashes, operation);
+        }
+        if (optimistic) {
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> operation.apply(LockMode.OPTIMISTIC));
+                } catch (OptimisticLockingFailureException e) {
+                    log.debug("Optimistic card update conflict, attempt {} of {}", attempt, maxAttempts);
+                    if (attempt < maxAttempts) {
+                        backoff(attempt);
+                    }
+                }
+            }
+            log.info("Card update conflicted {} times, falling back to pessimistic locking", maxAttempts);
+        }
+        return transactionTemplate.execute(status -> operation.apply(LockMode.PESSIMISTIC));
+    }
+
+    private void backoff(int attempt) {
+        long bound = backoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardLockTimeoutException();
+        }
+    }
+}
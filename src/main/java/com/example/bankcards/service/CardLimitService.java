@@ -0,0 +1,183 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.SetLimitsForCardRequest;
+import com.example.bankcards.entity.enums.LimitType;
+import com.example.bankcards.exception.card.CardWithNumberNoExistsException;
+import com.example.bankcards.exception.card.LimitExhaustedException;
+import com.example.bankcards.limit.store.SpendCheck;
+import com.example.bankcards.limit.store.SpendCounterStore;
+import com.example.bankcards.limit.store.SpendPeriod;
+import com.example.bankcards.repository.CardLimitRepository;
+import com.example.bankcards.repository.CardLimitRepository.CardLimit;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.SpendRollupRepository;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Дневные и месячные лимиты расходов по карте. Расход резервируется в SpendCounterStore до блокировки карты
+ * и до обращения к PostgreSQL: лимиты карты берутся из кэша в памяти, счётчики - из Redis (или локальных
+ * счётчиков), поэтому запрос сверх лимита отклоняется без запросов к БД. Если операция не выполнена,
+ * резерв возвращается через release.
+ * Отсутствующие счётчики периода (новый день, вытеснение ключа, переключение на резервное хранилище)
+ * заполняются накопленными расходами карты за день и месяц из SpendRollupRepository.
+ * Изменение лимитов сбрасывает кэш только на своём узле, остальные узлы увидят его через ttl-seconds.
+ */
+@Slf4j
+@Service
+public class CardLimitService {
+
+    private static final int AMOUNT_SCALE = 4;
+
+    private final CardLimitRepository cardLimitRepository;
+    private final CardRepository cardRepository;
+    private final SpendRollupRepository spendRollupRepository;
+    private final SpendCounterStore spendCounterStore;
+    private final CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+    private final boolean enabled;
+    private final int cacheMaxSize;
+    private final long cacheTtlMillis;
+
+    private final LinkedHashMap<String, CachedLimit> cachedLimits = new LinkedHashMap<>(16, 0.75f, true);
+
+    public CardLimitService(CardLimitRepository cardLimitRepository,
+                            CardRepository cardRepository,
+                            SpendRollupRepository spendRollupRepository,
+                            SpendCounterStore spendCounterStore,
+                            CardNumberBlindIndexUtil cardNumberBlindIndexUtil,
+                            @Value("${card.limits.enabled:true}") boolean enabled,
+                            @Value("${card.limits.cache.max-size:10000}") int cacheMaxSize,
+                            @Value("${card.limits.cache.ttl-seconds:60}") long cacheTtlSeconds) {
+        this.cardLimitRepository = cardLimitRepository;
+        this.cardRepository = cardRepository;
+        this.spendRollupRepository = spendRollupRepository;
+        this.spendCounterStore = spendCounterStore;
+        this.cardNumberBlindIndexUtil = cardNumberBlindIndexUtil;
+        this.enabled = enabled;
+        this.cacheMaxSize = cacheMaxSize;
+        this.cacheTtlMillis = cacheTtlSeconds * 1000;
+    }
+
+    @Transactional
+    public String setLimits(SetLimitsForCardRequest limitsDto) {
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(limitsDto.cardNumber());
+        Long cardId = cardRepository.findIdByCardNumberHash(cardNumberHash)
+                .orElseThrow(()-> new CardWithNumberNoExistsException(limitsDto.cardNumber()));
+
+        cardLimitRepository.upsert(cardId, limitsDto.dailyLimit(), limitsDto.monthlyLimit());
+        synchronized (cachedLimits) {
+            cachedLimits.remove(cardNumberHash);
+        }
+        return "Card limits set";
+    }
+
+    /**
+     * Резервирует расход в счётчиках карты.
+     * @throws LimitExhaustedException если расход превысит дневной или месячный лимит
+     */
+    public Reservation reserve(String cardNumberHash, BigDecimal amount) {
+        if (!enabled) {
+            return Reservation.NONE;
+        }
+        Optional<CardLimit> limit = findLimit(cardNumberHash);
+        if (limit.isEmpty()) {
+            return Reservation.NONE;
+        }
+
+        SpendPeriod period = SpendPeriod.of(LocalDate.now());
+        long units = toUnits(amount);
+        long dailyLimit = toUnits(limit.get().dailyLimit());
+        long monthlyLimit = toUnits(limit.get().monthlyLimit());
+
+        SpendCheck check = spendCounterStore.tryAdd(cardNumberHash, period, units, dailyLimit, monthlyLimit);
+        if (check.status() == SpendCheck.Status.NOT_SEEDED) {
+            seed(cardNumberHash, period);
+            check = spendCounterStore.tryAdd(cardNumberHash, period, units, dailyLimit, monthlyLimit);
+        }
+
+        if (check.status() == SpendCheck.Status.REJECTED) {
+            BigDecimal exhaustedLimit = check.exhausted() == LimitType.DAILY
+                    ? limit.get().dailyLimit()
+                    : limit.get().monthlyLimit();
+            BigDecimal allowed = exhaustedLimit.subtract(fromUnits(check.spent())).max(BigDecimal.ZERO);
+            throw new LimitExhaustedException(exhaustedLimit, check.exhausted(), allowed);
+        }
+        if (check.status() == SpendCheck.Status.NOT_SEEDED) {
+            log.warn("Spend counters of card {} were not seeded, limit check skipped", cardNumberHash);
+            return Reservation.NONE;
+        }
+        return new Reservation(cardNumberHash, period, units);
+    }
+
+    /**
+     * Возвращает резерв операции, которая не была выполнена.
+     */
+    public void release(Reservation reservation) {
+        if (reservation == Reservation.NONE) {
+            return;
+        }
+        try {
+            spendCounterStore.subtract(reservation.cardNumberHash(), reservation.period(), reservation.amount());
+        } catch (RuntimeException e) {
+            // Невозвращённый резерв только занижает доступный остаток лимита до конца периода
+            log.warn("Failed to release spend reservation of card {}", reservation.cardNumberHash(), e);
+        }
+    }
+
+    private void seed(String cardNumberHash, SpendPeriod period) {
+        long dailySpent = toUnits(spendRollupRepository.sumSpentOn(cardNumberHash, period.day()));
+        long monthlySpent = toUnits(spendRollupRepository.sumSpentIn(cardNumberHash, period.month()));
+        spendCounterStore.seed(cardNumberHash, period, dailySpent, monthlySpent);
+    }
+
+    private Optional<CardLimit> findLimit(String cardNumberHash) {
+        long now = System.currentTimeMillis();
+        synchronized (cachedLimits) {
+            CachedLimit cached = cachedLimits.get(cardNumberHash);
+            if (cached != null && cached.expiresAt > now) {
+                return cached.limit;
+            }
+        }
+
+        Optional<CardLimit> limit = cardLimitRepository.findByCardNumberHash(cardNumberHash);
+        synchronized (cachedLimits) {
+            cachedLimits.put(cardNumberHash, new CachedLimit(limit, now + cacheTtlMillis));
+            Iterator<Map.Entry<String, CachedLimit>> iterator = cachedLimits.entrySet().iterator();
+            while (cachedLimits.size() > cacheMaxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return limit;
+    }
+
+    private static long toUnits(BigDecimal amount) {
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal fromUnits(long units) {
+        return BigDecimal.valueOf(units, AMOUNT_SCALE);
+    }
+
+    /**
+     * Зарезервированный расход: amount в десятитысячных долях валюты.
+     */
+    public record Reservation(String cardNumberHash, SpendPeriod period, long amount) {
+
+        public static final Reservation NONE = new Reservation(null, null, 0);
+    }
+
+    private record CachedLimit(Optional<CardLimit> limit, long expiresAt) {
+    }
+}
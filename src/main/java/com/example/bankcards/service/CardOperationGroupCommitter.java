@@ -0,0 +1,263 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.card.CardBlockedException;
+import com.example.bankcards.exception.card.CardClosedException;
+import com.example.bankcards.exception.card.CardLockTimeoutException;
+import com.example.bankcards.exception.card.CardWithNumberNoExistsException;
+import com.example.bankcards.exception.card.InsufficientFundsException;
+import com.example.bankcards.exception.customer.NoAccessToOtherDataException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardBalanceOperationExecutor.LockMode;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Групповой коммит операций с балансом: операции из разных запросов собираются в пакет
+ * (до max-batch-size операций или max-wait-micros ожидания) и выполняются одним потоком в одной транзакции.
+ * Все карты пакета блокируются заранее одним запросом в порядке id, каждая операция выполняется в своей точке
+ * сохранения: отклонённая проверкой операция (нехватка средств, заблокированная карта) откатывается к ней
+ * и не валит пакет, а контекст постоянства очищается от её несброшенных изменений; любая другая ошибка
+ * откатывает весь пакет. Точки сохранения ставятся прямо на JDBC-соединении сессии: HibernateJpaDialect
+ * не поддерживает вложенные транзакции JpaTransactionManager.
+ * Изменения операции сбрасываются в БД до освобождения её точки сохранения: иначе Hibernate сбросил бы их
+ * автоматически внутри точки сохранения следующей операции, и её откат молча стёр бы уже успешную операцию.
+ * Результаты и ошибки операций передаются вызывающим только после коммита пакета.
+ * Вызывающий ждёт не дольше submit-timeout-millis: если операция к этому времени ещё не взята в пакет,
+ * она снимается с очереди и вызывающий получает CardLockTimeoutException; взятая в пакет операция
+ * дожидается его коммита, чтобы вызывающий не получил ошибку по уже выполненной операции.
+ */
+@Slf4j
+@Component
+public class CardOperationGroupCommitter {
+
+    private final CardRepository cardRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate batchTransaction;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final String lockTimeout;
+    private final long submitTimeoutMillis;
+    private final BlockingQueue<PendingOperation<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean stopped;
+
+    public CardOperationGroupCommitter(CardRepository cardRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       EntityManager entityManager,
+                                       @Value("${card.group-commit.enabled:false}") boolean enabled,
+                                       @Value("${card.group-commit.max-batch-size:256}") int maxBatchSize,
+                                       @Value("${card.group-commit.max-wait-micros:1000}") long maxWaitMicros,
+                                       @Value("${card.group-commit.submit-timeout-millis:5000}") long submitTimeoutMillis,
+                                       @Value("${card.lock-timeout:3s}") String lockTimeout) {
+        this.cardRepository = cardRepository;
+        this.entityManager = entityManager;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.lockTimeout = lockTimeout;
+        this.submitTimeoutMillis = submitTimeoutMillis;
+        this.worker = new Thread(this::run, "card-group-commit");
+        this.worker.setDaemon(true);
+        this.stopped = !enabled;
+        if (enabled) {
+            worker.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит операцию в очередь и ждёт коммита её пакета.
+     * @param cardNumberHashes карты, которые операция будет менять
+     * @throws IllegalStateException если поток группового коммита остановлен
+     */
+    public <T> T submit(Collection<String> cardNumberHashes, Function<LockMode, T> operation) {
+        if (stopped) {
+            throw new IllegalStateException("Card group commit stopped");
+        }
+        PendingOperation<T> pending = new PendingOperation<>(cardNumberHashes, operation);
+        queue.add(pending);
+        // Поток мог остановиться и разобрать очередь до добавления операции
+        if (stopped && queue.remove(pending)) {
+            throw new IllegalStateException("Card group commit stopped");
+        }
+        try {
+            return pending.future.get(submitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (pending.take()) {
+                queue.remove(pending);
+                throw new CardLockTimeoutException();
+            }
+            return join(pending.future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (pending.take()) {
+                queue.remove(pending);
+                throw new IllegalStateException("Interrupted while waiting for card group commit", e);
+            }
+            return join(pending.future);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        worker.interrupt();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private void run() {
+        List<PendingOperation<?>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingOperation<?> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                process(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            IllegalStateException stoppedException = new IllegalStateException("Card group commit stopped");
+            batch.forEach(pending -> pending.future.completeExceptionally(stoppedException));
+            PendingOperation<?> pending;
+            while ((pending = queue.poll()) != null) {
+                pending.future.completeExceptionally(stoppedException);
+            }
+        }
+    }
+
+    /**
+     * Ошибка пакета, включая Error, завершает только операции этого пакета: поток продолжает разбирать очередь.
+     */
+    private void process(List<PendingOperation<?>> batch) {
+        batch.removeIf(pending -> !pending.take());
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batchTransaction.executeWithoutResult(status -> {
+                lockCards(batch);
+                batch.forEach(this::apply);
+            });
+        } catch (Throwable e) {
+            log.warn("Card group commit of {} operations failed", batch.size(), e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+        batch.forEach(PendingOperation::complete);
+    }
+
+    private void lockCards(List<PendingOperation<?>> batch) {
+        TreeSet<String> cardNumberHashes = new TreeSet<>();
+        batch.forEach(pending -> cardNumberHashes.addAll(pending.cardNumberHashes));
+        try {
+            cardRepository.setLockTimeout(lockTimeout);
+            cardRepository.findAllByCardNumberHashInWithLock(cardNumberHashes);
+        } catch (PessimisticLockingFailureException e) {
+            throw new CardLockTimeoutException();
+        }
+    }
+
+    private <T> void apply(PendingOperation<T> pending) {
+        Session session = entityManager.unwrap(Session.class);
+        Savepoint savepoint = session.doReturningWork(Connection::setSavepoint);
+        try {
+            T result = pending.operation.apply(LockMode.PESSIMISTIC);
+            entityManager.flush();
+            session.doWork(connection -> connection.releaseSavepoint(savepoint));
+            pending.result = result;
+        } catch (InsufficientFundsException | CardBlockedException | CardClosedException
+                 | CardWithNumberNoExistsException | NoAccessToOtherDataException e) {
+            session.doWork(connection -> connection.rollback(savepoint));
+            // Предыдущие операции уже сброшены в БД, поэтому очистка теряет только изменения отклонённой
+            entityManager.clear();
+            pending.rejection = e;
+        }
+    }
+
+    private static final class PendingOperation<T> {
+
+        private final Collection<String> cardNumberHashes;
+        private final Function<LockMode, T> operation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicBoolean taken = new AtomicBoolean();
+        private T result;
+        private RuntimeException rejection;
+
+        private PendingOperation(Collection<String> cardNumberHashes, Function<LockMode, T> operation) {
+            this.cardNumberHashes = cardNumberHashes;
+            this.operation = operation;
+        }
+
+        /**
+         * Операцию забирает либо поток группового коммита для выполнения, либо вызывающий по тайм-ауту.
+         * @return true, если операция досталась вызывающему этот метод
+         */
+        private boolean take() {
+            return taken.compareAndSet(false, true);
+        }
+
+        private void complete() {
+            if (rejection != null) {
+                future.completeExceptionally(rejection);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
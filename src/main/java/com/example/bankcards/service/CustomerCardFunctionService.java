@@ -1,6 +1,8 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.card.*;
+import com.example.bankcards.dto.transaction.TransactionCursor;
+import com.example.bankcards.dto.transaction.TransactionPageResponse;
 import com.example.bankcards.dto.transaction.TransactionResponse;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.entity.Customer;
@@ -12,13 +14,20 @@ import com.example.bankcards.entity.mapper.CardMapper;
 import com.example.bankcards.entity.mapper.TransactionMapper;
 import com.example.bankcards.entity.operations.Transaction;
 import com.example.bankcards.exception.card.CardBlockedException;
+import com.example.bankcards.exception.card.CardClosedException;
+import com.example.bankcards.exception.card.CardLockTimeoutException;
 import com.example.bankcards.exception.card.CardWithNumberNoExistsException;
 import com.example.bankcards.exception.card.InsufficientFundsException;
 import com.example.bankcards.exception.customer.*;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionQueryRepository;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.CardBalanceOperationExecutor.LockMode;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -27,7 +36,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -37,10 +51,23 @@ public class CustomerCardFunctionService {
     private final CardRepository cardRepository;
     private final CustomerService customerService;
     private final TransactionRepository transactionRepository;
+    private final TransactionQueryRepository transactionQueryRepository;
     private final CardMapper cardMapper;
     private final TransactionMapper transactionMapper;
-    private final IdempotencyService idempotencyService;
-    private final long TIME_LIFE_RECORD_DB = 3600;
+    private final CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+    private final CardBalanceOperationExecutor cardBalanceOperationExecutor;
+    private final HotCardBalanceService hotCardBalanceService;
+    private final LedgerService ledgerService;
+    private final BulkTransferService bulkTransferService;
+    private final CardLimitService cardLimitService;
+    private final SpendRollupService spendRollupService;
+    private final TransactionOutboxService transactionOutboxService;
+
+    @Value("${card.lock-timeout:3s}")
+    private String lockTimeout;
+
+    @Value("${card.bulk-transfer.chunk-size:500}")
+    private int bulkTransferChunkSize;
 
     @Transactional(readOnly = true)
     public Page<CardResponse> getCustomerCards(String email, CardStatus status, int page, int size) {
@@ -50,78 +77,113 @@ public class CustomerCardFunctionService {
 
         Pageable pageable = PageRequest.of(page,size, Sort.by(Sort.Direction.ASC,"createdAt"));
         if(status != null){
-            return cardRepository.findByCustomerIdAndStatus(idCustomer, status, pageable)
+            return cardRepository.findViewsByCustomerIdAndStatus(idCustomer, status, pageable)
                     .map(cardMapper::toCardResponse);
         }
 
-        return cardRepository.findByCustomerId(idCustomer, pageable).map(cardMapper::toCardResponse);
+        return cardRepository.findViewsByCustomerId(idCustomer, pageable).map(cardMapper::toCardResponse);
     }
 
     @Transactional(readOnly = true)
     public CardResponse getCustomerCard(String cartNumber, String email) {
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(cartNumber);
 
-        Card card = cardRepository.findByCardNumber(cartNumber)
-                .orElseThrow(()-> new CardWithNumberNoExistsException(cartNumber));
-
-        if(!email.equals(card.getCustomer().getEmail())){
-            throw new NoAccessToOtherDataException();
-        }
-
-        return cardMapper.toCardResponse(card);
+        return cardRepository.findViewByCardNumberHashAndCustomerEmail(cardNumberHash, email)
+                .map(cardMapper::toCardResponse)
+                .orElseThrow(()-> notOwnedCard(cardNumberHash, cartNumber));
     }
 
     @Transactional
-    public String requestCardBlock(BlockCardRequest blockCardDto, String idempotencyKey, String email) {
-        Card card = cardRepository.findByCardNumber(blockCardDto.cardNumber())
-                .orElseThrow(()-> new CardWithNumberNoExistsException(blockCardDto.cardNumber()));
-
-        if(!email.equals(card.getCustomer().getEmail())){
-            throw new NoAccessToOtherDataException();
-        }
+    public String requestCardBlock(BlockCardRequest blockCardDto, String email) {
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(blockCardDto.cardNumber());
+        Card card = cardRepository.findByCardNumberHashAndCustomerEmail(cardNumberHash, email)
+                .orElseThrow(()-> notOwnedCard(cardNumberHash, blockCardDto.cardNumber()));
 
         if (card.getStatus() == CardStatus.BLOCKED) {
             throw new RuntimeException("Card is already blocked");
         }
+        if (card.getStatus() == CardStatus.CLOSED) {
+            throw new CardClosedException(blockCardDto.cardNumber());
+        }
 
         card.setStatus(CardStatus.BLOCKED);
         cardRepository.save(card);
 
         String stringResultResponse = "Card has been blocked";
-        idempotencyService.saveIdempotencyKey(idempotencyKey, stringResultResponse, TIME_LIFE_RECORD_DB);
         return stringResultResponse;
     }
 
+    /**
+     * История операций карты страницами по (createdAt, id) с фильтрами запроса.
+     * @param cursor nextCursor предыдущей страницы, null для первой; фильтры страниц должны совпадать
+     */
     @Transactional(readOnly = true)
-    public List<TransactionResponse> getTransactionalByCard(ShowTransactionalByCardRequest Dto,
-                                                            int page, int size, String idempotencyKey, String email) {
-        Card card = cardRepository.findByCardNumber(Dto.cardNumber())
-                .orElseThrow(()-> new CardWithNumberNoExistsException(Dto.cardNumber()));
-
-        if(!email.equals(card.getCustomer().getEmail())){
-            throw new NoAccessToOtherDataException();
-        }
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt"));
+    public TransactionPageResponse getTransactionalByCard(ShowTransactionalByCardRequest Dto,
+                                                          String cursor, int size, String email) {
+        TransactionPageResponse.checkSize(size);
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(Dto.cardNumber());
+        Long cardId = cardRepository.findIdByCardNumberHashAndCustomerEmail(cardNumberHash, email)
+                .orElseThrow(()-> notOwnedCard(cardNumberHash, Dto.cardNumber()));
+
+        List<Transaction> rows = transactionQueryRepository
+                .findPage(cardId, Dto.filter(), TransactionCursor.decode(cursor), size + 1);
+        return TransactionPageResponse.of(rows, size, transactionMapper::toTransactionResponse);
+    }
 
-        List<TransactionResponse> responses = transactionRepository.findBySourceCard(card, pageable)
-                .stream().map(transactionMapper::toTransactionResponse).toList();
+    /**
+     * Расходы карты за текущий день и месяц по типам операций из накопителей, без чтения истории транзакций.
+     * Входящие деньги (зачисления и переводы на карту) накопители не хранят, для них нужна история транзакций.
+     */
+    @Transactional(readOnly = true)
+    public CardSpendSummaryResponse getSpendSummary(String cardNumber, String email) {
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(cardNumber);
+        Long cardId = cardRepository.findIdByCardNumberHashAndCustomerEmail(cardNumberHash, email)
+                .orElseThrow(()-> notOwnedCard(cardNumberHash, cardNumber));
 
-        idempotencyService.saveIdempotencyKey(idempotencyKey, responses, TIME_LIFE_RECORD_DB);
-        return responses;
+        return spendRollupService.summary(cardId, LocalDate.now());
     }
 
 
-    @Transactional
-    public TransactionResponse transferBetweenCards(TransferFundsBetweenUserCardsRequest transferFundsDto,
-                                                    String idempotencyKey, String email) {
-
-        Card cardFrom = cardRepository.findByCardNumberWithLock(transferFundsDto.fromCardNumber())
-                .orElseThrow(()-> new CardWithNumberNoExistsException(transferFundsDto.fromCardNumber()));
+    public TransactionResponse transferBetweenCards(TransferFundsBetweenUserCardsRequest transferFundsDto, String email) {
+        String fromCardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(transferFundsDto.fromCardNumber());
+        String toCardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(transferFundsDto.toCardNumber());
+
+        Long cardFromId = ownedCardId(fromCardNumberHash, transferFundsDto.fromCardNumber(), email);
+        CardLimitService.Reservation reservation =
+                cardLimitService.reserve(fromCardNumberHash, transferFundsDto.amount());
+        try {
+            return cardBalanceOperationExecutor.execute(List.of(fromCardNumberHash, toCardNumberHash),
+                    lockMode -> transfer(transferFundsDto, cardFromId, fromCardNumberHash, toCardNumberHash,
+                            email, lockMode));
+        } catch (RuntimeException e) {
+            cardLimitService.release(reservation);
+            throw e;
+        }
+    }
 
-        Card cardTo = cardRepository.findByCardNumberWithLock(transferFundsDto.toCardNumber())
-                .orElseThrow(()-> new CardWithNumberNoExistsException(transferFundsDto.fromCardNumber()));
+    private TransactionResponse transfer(TransferFundsBetweenUserCardsRequest transferFundsDto, Long cardFromId,
+                                         String fromCardNumberHash, String toCardNumberHash,
+                                         String email, LockMode lockMode) {
+
+        Card cardFrom;
+        Card cardTo;
+        if (isHotCard(toCardNumberHash)) {
+            cardFrom = loadOwnedCard(transferFundsDto.fromCardNumber(), fromCardNumberHash, email, lockMode);
+            cardTo = cardRepository.findByCardNumberHashWithoutCustomer(toCardNumberHash)
+                    .orElseThrow(()-> new CardWithNumberNoExistsException(transferFundsDto.toCardNumber()));
+        } else {
+            List<Card> lockedCards = loadCards(List.of(fromCardNumberHash, toCardNumberHash), lockMode);
+
+            cardFrom = lockedCards.stream().filter(card -> fromCardNumberHash.equals(card.getCardNumberHash()))
+                    .findFirst()
+                    .orElseThrow(()-> new CardWithNumberNoExistsException(transferFundsDto.fromCardNumber()));
+
+            cardTo = lockedCards.stream().filter(card -> toCardNumberHash.equals(card.getCardNumberHash()))
+                    .findFirst()
+                    .orElseThrow(()-> new CardWithNumberNoExistsException(transferFundsDto.toCardNumber()));
+        }
 
-        if(!email.equals(cardFrom.getCustomer().getEmail())){
+        if (!cardFromId.equals(cardFrom.getId())) {
             throw new NoAccessToOtherDataException();
         }
 
@@ -129,12 +191,8 @@ public class CustomerCardFunctionService {
             throw new CardBlockedException();
         }
 
-        if (cardFrom.getBalance().compareTo(transferFundsDto.amount()) < 0) {
-            throw new InsufficientFundsException();
-        }
-
-        cardFrom.setBalance((cardFrom.getBalance().subtract(transferFundsDto.amount())));
-        cardTo.setBalance(cardTo.getBalance().add(transferFundsDto.amount()));
+        debit(cardFrom, transferFundsDto.amount());
+        credit(cardTo, transferFundsDto.amount());
 
         Transaction transferTransaction = new Transaction();
         transferTransaction.setSourceCard(cardFrom);
@@ -146,21 +204,63 @@ public class CustomerCardFunctionService {
 
         cardRepository.save(cardFrom);
         cardRepository.save(cardTo);
-        TransactionResponse response = transactionMapper.toTransactionResponse(transactionRepository.save(transferTransaction));
-
-        idempotencyService.saveIdempotencyKey(idempotencyKey, response, TIME_LIFE_RECORD_DB);
+        Transaction savedTransaction = transactionRepository.save(transferTransaction);
+        ledgerService.recordTransfer(savedTransaction);
+        spendRollupService.record(savedTransaction);
+        transactionOutboxService.record(savedTransaction);
+        TransactionResponse response = transactionMapper.toTransactionResponse(savedTransaction);
         return response;
 
     }
 
-    @Transactional
-    public TransactionResponse withdrawalFromCard(WithdrawFundsRequest withdrawDto, String idempotencyKey, String email){
-        Card cardFrom = cardRepository.findByCardNumberWithLock(withdrawDto.cardNumber())
-                .orElseThrow(()-> new CardWithNumberNoExistsException(withdrawDto.cardNumber()));
+    public BulkTransferResponse bulkTransfer(BulkTransferRequest bulkTransferDto, String email) {
+        List<BulkTransferItemResponse> items = new ArrayList<>(bulkTransferDto.transfers().size());
+        bulkTransfer(bulkTransferDto, email, items::add);
+        return new BulkTransferResponse(items);
+    }
 
-        if(!email.equals(cardFrom.getCustomer().getEmail())){
-            throw new NoAccessToOtherDataException();
+    /**
+     * Выполняет переводы частями по card.bulk-transfer.chunk-size, каждая часть - в своей транзакции.
+     * Результаты части передаются в sink после её коммита. Сбой части не прерывает пакет: её переводы
+     * получают статус FAILED, поэтому уже выполненные части никогда не повторяются при повторе по тому же ключу.
+     */
+    public void bulkTransfer(BulkTransferRequest bulkTransferDto, String email,
+                             Consumer<BulkTransferItemResponse> sink) {
+        List<TransferFundsBetweenUserCardsRequest> transfers = bulkTransferDto.transfers();
+        for (int offset = 0; offset < transfers.size(); offset += bulkTransferChunkSize) {
+            List<TransferFundsBetweenUserCardsRequest> chunk =
+                    transfers.subList(offset, Math.min(offset + bulkTransferChunkSize, transfers.size()));
+            List<BulkTransferItemResponse> results;
+            try {
+                results = bulkTransferService.transferChunk(chunk, offset, email);
+            } catch (RuntimeException e) {
+                log.warn("Bulk transfer chunk at offset {} failed", offset, e);
+                int chunkOffset = offset;
+                results = IntStream.range(0, chunk.size())
+                        .mapToObj(i -> new BulkTransferItemResponse(chunkOffset + i,
+                                BulkTransferItemResponse.Status.FAILED, null, e.getMessage()))
+                        .toList();
+            }
+            results.forEach(sink);
+        }
+    }
+
+    public TransactionResponse withdrawalFromCard(WithdrawFundsRequest withdrawDto, String email){
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(withdrawDto.cardNumber());
+        ownedCardId(cardNumberHash, withdrawDto.cardNumber(), email);
+        CardLimitService.Reservation reservation = cardLimitService.reserve(cardNumberHash, withdrawDto.amount());
+        try {
+            return cardBalanceOperationExecutor.execute(List.of(cardNumberHash),
+                    lockMode -> withdraw(withdrawDto, cardNumberHash, email, lockMode));
+        } catch (RuntimeException e) {
+            cardLimitService.release(reservation);
+            throw e;
         }
+    }
+
+    private TransactionResponse withdraw(WithdrawFundsRequest withdrawDto, String cardNumberHash,
+                                         String email, LockMode lockMode){
+        Card cardFrom = loadOwnedCard(withdrawDto.cardNumber(), cardNumberHash, email, lockMode);
 
         BigDecimal amountWithdraw = withdrawDto.amount();
 
@@ -168,11 +268,7 @@ public class CustomerCardFunctionService {
             throw new CardBlockedException();
         }
 
-        if (cardFrom.getBalance().compareTo(amountWithdraw) < 0) {
-            throw new InsufficientFundsException();
-        }
-
-        cardFrom.setBalance(cardFrom.getBalance().subtract(amountWithdraw));
+        debit(cardFrom, amountWithdraw);
 
         Transaction withdrawTransaction = new Transaction();
         withdrawTransaction.setSourceCard(cardFrom);
@@ -183,26 +279,35 @@ public class CustomerCardFunctionService {
 
         cardRepository.save(cardFrom);
 
-        TransactionResponse response = transactionMapper.toTransactionResponse(transactionRepository.save(withdrawTransaction));
-        idempotencyService.saveIdempotencyKey(idempotencyKey, response, TIME_LIFE_RECORD_DB);
+        Transaction savedTransaction = transactionRepository.save(withdrawTransaction);
+        ledgerService.recordDebit(savedTransaction);
+        spendRollupService.record(savedTransaction);
+        transactionOutboxService.record(savedTransaction);
+        TransactionResponse response = transactionMapper.toTransactionResponse(savedTransaction);
 
         return response;
 
     }
 
-    @Transactional
-    public TransactionResponse cardReplenishment(ReplenishmentCardRequest replenishmentCardDto, String idempotencyKey,
-             String email) {
+    public TransactionResponse cardReplenishment(ReplenishmentCardRequest replenishmentCardDto, String email) {
+        String cardNumberHash = cardNumberBlindIndexUtil.hashCardNumber(replenishmentCardDto.cardNumber());
+        return cardBalanceOperationExecutor.execute(List.of(cardNumberHash),
+                lockMode -> replenish(replenishmentCardDto, cardNumberHash, email, lockMode));
+    }
 
-        Card card = cardRepository.findByCardNumberWithLock(replenishmentCardDto.cardNumber())
-                .orElseThrow(()-> new CardWithNumberNoExistsException(replenishmentCardDto.cardNumber()));
+    private TransactionResponse replenish(ReplenishmentCardRequest replenishmentCardDto, String cardNumberHash,
+                                          String email, LockMode lockMode) {
 
-        log.info("Request email: {}, Card owner email: {}", email, card.getCustomer().getEmail());
-        if(!email.equals(card.getCustomer().getEmail())){
-            throw new NoAccessToOtherDataException();
+        Card card = isHotCard(cardNumberHash)
+                ? cardRepository.findByCardNumberHashAndCustomerEmail(cardNumberHash, email)
+                        .orElseThrow(()-> notOwnedCard(cardNumberHash, replenishmentCardDto.cardNumber()))
+                : loadOwnedCard(replenishmentCardDto.cardNumber(), cardNumberHash, email, lockMode);
+
+        if (card.getStatus() == CardStatus.CLOSED) {
+            throw new CardClosedException(replenishmentCardDto.cardNumber());
         }
 
-        card.setBalance(card.getBalance().add(replenishmentCardDto.amount()));
+        credit(card, replenishmentCardDto.amount());
 
         Transaction replenishTransaction = new Transaction();
         replenishTransaction.setSourceCard(card);
@@ -210,14 +315,102 @@ public class CustomerCardFunctionService {
         replenishTransaction.setTransactionType(TransactionType.CREDIT);
         replenishTransaction.setTransactionStatus(TransactionStatus.SUCCESS);
         replenishTransaction.setCurrency("RUB");
-        TransactionResponse transactionResponse = transactionMapper
-                .toTransactionResponse(transactionRepository.save(replenishTransaction));
+        Transaction savedTransaction = transactionRepository.save(replenishTransaction);
+        ledgerService.recordCredit(savedTransaction);
+        transactionOutboxService.record(savedTransaction);
+        TransactionResponse transactionResponse = transactionMapper.toTransactionResponse(savedTransaction);
 
         replenishTransaction.getTransactionStatus().toString();
 
         cardRepository.save(card);
-
-        idempotencyService.saveIdempotencyKey(idempotencyKey, transactionResponse, TIME_LIFE_RECORD_DB);
         return transactionResponse;
     }
+
+    private void debit(Card card, BigDecimal amount) {
+        if (hotCardBalanceService.isHot(card)) {
+            hotCardBalanceService.debit(card, amount);
+            return;
+        }
+        if (card.getBalance().compareTo(amount) < 0) {
+            throw new InsufficientFundsException();
+        }
+        card.setBalance(card.getBalance().subtract(amount));
+    }
+
+    private void credit(Card card, BigDecimal amount) {
+        if (hotCardBalanceService.isHot(card)) {
+            hotCardBalanceService.credit(card, amount);
+            return;
+        }
+        card.setBalance(card.getBalance().add(amount));
+    }
+
+    /**
+     * Принадлежность проверяется до резерва лимита: иначе по LimitExhaustedException можно узнать лимиты чужой карты.
+     */
+    private Long ownedCardId(String cardNumberHash, String cardNumber, String email) {
+        return cardRepository.findIdByCardNumberHashAndCustomerEmail(cardNumberHash, email)
+                .orElseThrow(()-> notOwnedCard(cardNumberHash, cardNumber));
+    }
+
+    /**
+     * Принадлежность карты проверяется в WHERE запроса, поэтому пустой результат не различает чужую
+     * и несуществующую карту; причина уточняется отдельным запросом только на этом пути.
+     */
+    private RuntimeException notOwnedCard(String cardNumberHash, String cardNumber) {
+        if (cardRepository.existsByCardNumberHash(cardNumberHash)) {
+            return new NoAccessToOtherDataException();
+        }
+        return new CardWithNumberNoExistsException(cardNumber);
+    }
+
+    /**
+     * Зачисление на горячую карту не блокирует её строку, поэтому число слотов читается до блокировки
+     * отдельным скалярным запросом, не загружая сущность в контекст.
+     */
+    private boolean isHotCard(String cardNumberHash) {
+        return hotCardBalanceService.isEnabled()
+                && cardRepository.findBalanceSlotsByCardNumberHash(cardNumberHash).orElse(0) > 0;
+    }
+
+    /**
+     * Карта клиента: принадлежность проверяется в WHERE, владелец не загружается.
+     */
+    private Card loadOwnedCard(String cardNumber, String cardNumberHash, String email, LockMode lockMode) {
+        if (lockMode == LockMode.PESSIMISTIC) {
+            return lockOwnedCard(cardNumber, cardNumberHash, email);
+        }
+        return cardRepository.findByCardNumberHashAndCustomerEmail(cardNumberHash, email)
+                .orElseThrow(()-> notOwnedCard(cardNumberHash, cardNumber));
+    }
+
+    /**
+     * Без блокировки карты читаются в порядке id, чтобы UPDATE при коммите тоже шли в порядке id
+     * и встречные переводы не взаимоблокировались.
+     */
+    private List<Card> loadCards(Collection<String> cardNumberHashes, LockMode lockMode) {
+        if (lockMode == LockMode.PESSIMISTIC) {
+            return lockCards(cardNumberHashes);
+        }
+        return cardRepository.findAllByCardNumberHashInOrderById(cardNumberHashes);
+    }
+
+    private Card lockOwnedCard(String cardNumber, String cardNumberHash, String email) {
+        try {
+            cardRepository.setLockTimeout(lockTimeout);
+            return cardRepository.findByCardNumberHashAndCustomerEmailWithLock(cardNumberHash, email)
+                    .orElseThrow(()-> notOwnedCard(cardNumberHash, cardNumber));
+        } catch (PessimisticLockingFailureException e) {
+            throw new CardLockTimeoutException();
+        }
+    }
+
+    private List<Card> lockCards(Collection<String> cardNumberHashes) {
+        try {
+            cardRepository.setLockTimeout(lockTimeout);
+            return cardRepository.findAllByCardNumberHashInWithLock(cardNumberHashes);
+        } catch (PessimisticLockingFailureException e) {
+            throw new CardLockTimeoutException();
+        }
+    }
 }
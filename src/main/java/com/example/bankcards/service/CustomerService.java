@@ -25,8 +25,6 @@ public class CustomerService {
     private final CustomerMapper customerMapper;
     private final RoleRepository roleRepository;
     private final Argon2PasswordEncoder argon2PasswordEncoder;
-    private final IdempotencyService idempotencyService;
-    private final long TIME_LIFE_RECORD_DB = 3600;
 
 
     /**
@@ -34,7 +32,7 @@ public class CustomerService {
      * @return dto зарегистрированного пользователя
      */
     @Transactional
-    public CustomerRegistrationResponse registerCustomer(CustomerRegistrationRequest customerDto, String idempotencyKey) {
+    public CustomerRegistrationResponse registerCustomer(CustomerRegistrationRequest customerDto) {
         if(customerRepository.findByEmail(customerDto.email()).isPresent()) {
             log.error("Customer with email {} already exists", customerDto.email());
             throw new CustomerAlreadyRegisteredException(customerDto.email());
@@ -51,7 +49,6 @@ public class CustomerService {
         customer.setEnabled(true);
         CustomerRegistrationResponse response = customerMapper
                 .toCustomerRegistrationResponse(customerRepository.save(customer));
-        idempotencyService.saveIdempotencyKey(idempotencyKey, response, TIME_LIFE_RECORD_DB);
         return response;
     }
 
@@ -0,0 +1,103 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.card.InsufficientFundsException;
+import com.example.bankcards.repository.CardBalanceSlotRepository;
+import com.example.bankcards.repository.CardBalanceSlotRepository.SlotBalance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Режим "горячей" карты: баланс карты = card_balance + сумма balance_slots слотов.
+ * Зачисления попадают в случайный слот и не блокируют строку карты, поэтому параллельные пополнения
+ * конкурируют только внутри одного слота. Списания выполняются под блокировкой карты: сначала с card_balance,
+ * затем со слотов, начиная с самого крупного. Карта становится горячей, когда администратор задаёт ей число слотов;
+ * card.hot-balance.enabled разрешает зачислять на такие карты, не блокируя строку карты.
+ */
+@Service
+public class HotCardBalanceService {
+
+    private final CardBalanceSlotRepository cardBalanceSlotRepository;
+    private final boolean enabled;
+
+    public HotCardBalanceService(CardBalanceSlotRepository cardBalanceSlotRepository,
+                                 @Value("${card.hot-balance.enabled:false}") boolean enabled) {
+        this.cardBalanceSlotRepository = cardBalanceSlotRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isHot(Card card) {
+        return card.getBalanceSlots() > 0;
+    }
+
+    public BigDecimal availableBalance(Card card) {
+        return card.getBalance().add(cardBalanceSlotRepository.sumBalance(card.getId()));
+    }
+
+    /**
+     * Зачисление идёт без блокировки карты, поэтому число слотов могло устареть: администратор мог параллельно
+     * уменьшить его или выключить горячий режим (resize пересоздаёт слоты). Тогда UPDATE слота не находит строку,
+     * и сумма зачисляется на card_balance, который resize уже учёл, - зачисление не теряется.
+     */
+    public void credit(Card card, BigDecimal amount) {
+        int slot = ThreadLocalRandom.current().nextInt(card.getBalanceSlots());
+        if (!cardBalanceSlotRepository.credit(card.getId(), slot, amount)) {
+            cardBalanceSlotRepository.creditCardBalance(card.getId(), amount);
+        }
+    }
+
+    /**
+     * Вызывается под блокировкой карты (или с проверкой версии), поэтому параллельно со слотов может
+     * только добавляться сумма. Если слот всё же не покрыл свою часть, списание откатывается целиком;
+     * card_balance меняется последним, чтобы отклонённое списание не оставило изменений в сущности.
+     */
+    public void debit(Card card, BigDecimal amount) {
+        if (availableBalance(card).compareTo(amount) < 0) {
+            throw new InsufficientFundsException();
+        }
+
+        BigDecimal fromCard = card.getBalance().min(amount);
+        BigDecimal remaining = amount.subtract(fromCard);
+        if (remaining.signum() > 0 && debitSlots(card, remaining).signum() != 0) {
+            throw new InsufficientFundsException();
+        }
+        card.setBalance(card.getBalance().subtract(fromCard));
+    }
+
+    /**
+     * @return часть суммы, которую не удалось списать со слотов
+     */
+    private BigDecimal debitSlots(Card card, BigDecimal amount) {
+        BigDecimal remaining = amount;
+        for (SlotBalance slotBalance : cardBalanceSlotRepository.findFundedSlots(card.getId())) {
+            BigDecimal part = slotBalance.balance().min(remaining);
+            if (cardBalanceSlotRepository.debit(card.getId(), slotBalance.slot(), part)) {
+                remaining = remaining.subtract(part);
+            }
+            if (remaining.signum() == 0) {
+                break;
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Меняет число слотов карты, заблокированной вызывающим: остатки старых слотов переносятся в card_balance.
+     * 0 - выключить режим горячей карты.
+     */
+    public void resize(Card card, int slots) {
+        BigDecimal slotsBalance = cardBalanceSlotRepository.deleteSlots(card.getId());
+        card.setBalance(card.getBalance().add(slotsBalance));
+        card.setBalanceSlots(slots);
+        if (slots > 0) {
+            cardBalanceSlotRepository.createSlots(card.getId(), slots);
+        }
+    }
+}
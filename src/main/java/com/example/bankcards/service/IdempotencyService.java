@@ -1,40 +1,139 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.exception.ErrorValueIdempotencyKeyException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.bankcards.exception.IdempotencyRequestInProgressException;
+import com.example.bankcards.idempotency.IdempotencyNearCache;
+import com.example.bankcards.idempotency.store.IdempotencyRecord;
+import com.example.bankcards.idempotency.store.IdempotencyStore;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
 public class IdempotencyService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper mapper;
+    private final IdempotencyStore idempotencyStore;
+    private final IdempotencyNearCache nearCache;
+    private final ScheduledExecutorService renewals = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-renewal");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public boolean idempotencyKeyCheck(String idempotencyKey) {
+    @Value("${idempotency.in-flight-ttl-seconds:60}")
+    private long inFlightTtlSeconds;
+
+    @Value("${idempotency.wait-timeout-millis:5000}")
+    private long waitTimeoutMillis;
+
+    @Value("${idempotency.poll-interval-millis:50}")
+    private long pollIntervalMillis;
+
+    /**
+     * Резервирует ключ за текущим запросом или возвращает сохранённый результат.
+     * Если ключ занят параллельным запросом, ждёт его результат не дольше idempotency.wait-timeout-millis.
+     * @return сохранённый результат или пустой Optional, если ключ зарезервирован текущим запросом
+     */
+    public Optional<byte[]> reserveOrGetResult(String idempotencyKey) {
 
         if (idempotencyKey.isBlank()) {
             throw new ErrorValueIdempotencyKeyException();
         }
-        return redisTemplate.hasKey(idempotencyKey);
 
+        byte[] cachedResult = nearCache.get(idempotencyKey);
+        if (cachedResult != null) {
+            return Optional.of(cachedResult);
+        }
+
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+
+        while (true) {
+            IdempotencyRecord current = idempotencyStore.reserveOrGet(idempotencyKey, inFlightTtlSeconds);
+
+            if (current == null) {
+                return Optional.empty();
+            }
+            if (!current.isInFlight()) {
+                nearCache.put(idempotencyKey, current.result(), current.remainingTtlMillis());
+                return Optional.of(current.result());
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IdempotencyRequestInProgressException(idempotencyKey);
+            }
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyRequestInProgressException(idempotencyKey);
+            }
+        }
+    }
+
+    /**
+     * Продлевает резерв ключа каждую треть idempotency.in-flight-ttl-seconds, пока не закрыт возвращённый объект:
+     * операция дольше in-flight-ttl-seconds (пакет переводов) не теряет резерв, и повтор с тем же ключом
+     * не выполняет её второй раз.
+     */
+    public ReservationRenewal renewWhileRunning(String idempotencyKey) {
+        long periodMillis = Math.max(1, TimeUnit.SECONDS.toMillis(inFlightTtlSeconds) / 3);
+        ScheduledFuture<?> renewal = renewals.scheduleAtFixedRate(() -> renew(idempotencyKey),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return () -> renewal.cancel(false);
+    }
+
+    /**
+     * Выполняет операцию под уже зарезервированным ключом и сохраняет её результат.
+     * Пока операция выполняется, резерв продлевается; при ошибке резерв снимается.
+     * @param operation возвращает сериализованный результат
+     */
+    public void runReserved(String idempotencyKey, long ttlSeconds, Supplier<byte[]> operation) {
+        try (ReservationRenewal renewal = renewWhileRunning(idempotencyKey)) {
+            saveResult(idempotencyKey, operation.get(), ttlSeconds);
+        } catch (RuntimeException | Error e) {
+            releaseIdempotencyKey(idempotencyKey);
+            throw e;
+        }
+    }
+
+    public void saveResult(String idempotencyKey, byte[] result, long ttlSecond) {
+        idempotencyStore.save(idempotencyKey, result, ttlSecond);
+        nearCache.put(idempotencyKey, result, TimeUnit.SECONDS.toMillis(ttlSecond));
     }
 
-    @Transactional(readOnly = true)
-    public <T> T getResultByIdempotencyKey(String idempotencyKey, Class<T> clazz) {
+    public void releaseIdempotencyKey(String idempotencyKey) {
+        nearCache.invalidate(idempotencyKey);
+        idempotencyStore.release(idempotencyKey);
+    }
 
-        return mapper.convertValue(redisTemplate.opsForValue().get(idempotencyKey), clazz);
+    @PreDestroy
+    public void shutdown() {
+        renewals.shutdownNow();
     }
 
-    @Transactional
-    public void saveIdempotencyKey(String idempotencyKey, Object resultMethod, long ttlSecond) {
-        redisTemplate.opsForValue().set(idempotencyKey, resultMethod, ttlSecond, TimeUnit.SECONDS);
+    private void renew(String idempotencyKey) {
+        try {
+            if (!idempotencyStore.renew(idempotencyKey, inFlightTtlSeconds)) {
+                log.warn("Idempotency key {} reservation is lost while the request is running", idempotencyKey);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew idempotency key {} reservation", idempotencyKey, e);
+        }
+    }
+
+    public interface ReservationRenewal extends AutoCloseable {
+
+        @Override
+        void close();
     }
 }
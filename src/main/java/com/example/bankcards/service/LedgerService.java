@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.LedgerAccount;
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerRepository;
+import com.example.bankcards.repository.LedgerRepository.LedgerLeg;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Двойная запись операций по картам в журнал проводок: сумма проводок каждой операции равна нулю.
+ * Журнал - контрольный: баланс по-прежнему меняется в card_balance и слотах, а проводки пишутся рядом
+ * в транзакции операции. Периодически новые проводки сворачиваются в снимок баланса карты,
+ * и снимок сверяется с card_balance.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class LedgerService {
+
+    private final LedgerRepository ledgerRepository;
+    private final CardRepository cardRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public void recordTransfer(Transaction transaction) {
+        ledgerRepository.append(List.of(
+                cardLeg(transaction, transaction.getSourceCard(), transaction.getAmount().negate()),
+                cardLeg(transaction, transaction.getTargetCard(), transaction.getAmount())));
+    }
+
+    public void recordDebit(Transaction transaction) {
+        ledgerRepository.append(List.of(
+                cardLeg(transaction, transaction.getSourceCard(), transaction.getAmount().negate()),
+                externalLeg(transaction, transaction.getAmount())));
+    }
+
+    public void recordCredit(Transaction transaction) {
+        ledgerRepository.append(List.of(
+                cardLeg(transaction, transaction.getSourceCard(), transaction.getAmount()),
+                externalLeg(transaction, transaction.getAmount().negate())));
+    }
+
+    /**
+     * @return баланс карты по журналу: последний снимок плюс проводки после него
+     */
+    public BigDecimal balance(long cardId) {
+        return ledgerRepository.balance(cardId);
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval-millis:60000}")
+    public void snapshotBalances() {
+        for (Long cardId : ledgerRepository.findCardsWithNewEntries()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> snapshot(cardId));
+            } catch (RuntimeException e) {
+                log.warn("Ledger snapshot failed for card {}", cardId, e);
+            }
+        }
+    }
+
+    /**
+     * Снимок держит блокировку карты, поэтому незакоммиченных операций по ней нет
+     * и card_balance со слотами можно сравнить с балансом журнала.
+     */
+    private void snapshot(long cardId) {
+        BigDecimal ledgerBalance = ledgerRepository.snapshot(cardId);
+        cardRepository.findById(cardId).map(Card::getTotalBalance).ifPresent(cardBalance -> {
+            if (cardBalance.compareTo(ledgerBalance) != 0) {
+                log.warn("Ledger mismatch for card {}: card balance {}, ledger balance {}",
+                        cardId, cardBalance, ledgerBalance);
+            }
+        });
+    }
+
+    private LedgerLeg cardLeg(Transaction transaction, Card card, BigDecimal amount) {
+        return new LedgerLeg(transaction.getId(), card.getId(), LedgerAccount.CARD, amount);
+    }
+
+    private LedgerLeg externalLeg(Transaction transaction, BigDecimal amount) {
+        return new LedgerLeg(transaction.getId(), null, LedgerAccount.EXTERNAL, amount);
+    }
+}
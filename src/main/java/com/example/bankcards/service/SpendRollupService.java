@@ -0,0 +1,78 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.CardSpendSummaryResponse;
+import com.example.bankcards.dto.card.CardSpendSummaryResponse.SpendTotalResponse;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.repository.BulkTransferRepository.TransferRow;
+import com.example.bankcards.repository.SpendRollupRepository;
+import com.example.bankcards.repository.SpendRollupRepository.SpendRow;
+import com.example.bankcards.repository.SpendRollupRepository.SpendTotal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Накопленные расходы карт за день и за месяц. Учитываются только успешные расходные операции
+ * (списание, снятие, перевод) по карте-источнику - то же, что ограничивают лимиты. Зачисления не учитываются,
+ * чтобы зачисления на горячие карты не упирались в одну строку накопителя.
+ * Накопители обновляются в транзакции операции, поэтому откат операции откатывает и их.
+ */
+@RequiredArgsConstructor
+@Service
+public class SpendRollupService {
+
+    private static final Set<TransactionType> SPEND_TYPES =
+            EnumSet.of(TransactionType.DEBIT, TransactionType.WITHDRAWAL, TransactionType.TRANSFER);
+
+    private final SpendRollupRepository spendRollupRepository;
+
+    public void record(Transaction transaction) {
+        if (transaction.getTransactionStatus() != TransactionStatus.SUCCESS
+                || !SPEND_TYPES.contains(transaction.getTransactionType())) {
+            return;
+        }
+        spendRollupRepository.add(List.of(new SpendRow(transaction.getSourceCard().getId(), LocalDate.now(),
+                transaction.getTransactionType(), transaction.getAmount(), 1)));
+    }
+
+    /**
+     * Переводы пакета сворачиваются по карте-источнику: одна строка накопителя на карту.
+     */
+    public void recordTransfers(List<TransferRow> transfers) {
+        Map<Long, SpendRow> rows = new TreeMap<>();
+        LocalDate today = LocalDate.now();
+        transfers.forEach(transfer -> rows.merge(transfer.sourceCardId(),
+                new SpendRow(transfer.sourceCardId(), today, TransactionType.TRANSFER, transfer.amount(), 1),
+                (a, b) -> new SpendRow(a.cardId(), a.day(), a.type(), a.amount().add(b.amount()),
+                        a.operations() + b.operations())));
+        spendRollupRepository.add(List.copyOf(rows.values()));
+    }
+
+    public CardSpendSummaryResponse summary(long cardId, LocalDate day) {
+        YearMonth month = YearMonth.from(day);
+        List<SpendTotal> daily = spendRollupRepository.findDaily(cardId, day);
+        List<SpendTotal> monthly = spendRollupRepository.findMonthly(cardId, month);
+        return new CardSpendSummaryResponse(day, total(daily), toResponses(daily),
+                month, total(monthly), toResponses(monthly));
+    }
+
+    private static BigDecimal total(List<SpendTotal> totals) {
+        return totals.stream().map(SpendTotal::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static List<SpendTotalResponse> toResponses(List<SpendTotal> totals) {
+        return totals.stream()
+                .map(total -> new SpendTotalResponse(total.type().name(), total.amount(), total.operations()))
+                .toList();
+    }
+}
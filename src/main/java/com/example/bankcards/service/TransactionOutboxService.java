@@ -0,0 +1,66 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.outbox.TransactionEvent;
+import com.example.bankcards.repository.BulkTransferRepository.TransferRow;
+import com.example.bankcards.repository.TransactionOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись событий о транзакциях в transaction_outbox в той же транзакции БД, что и сама операция:
+ * событие появляется тогда и только тогда, когда транзакция закоммичена. Доставку выполняет TransactionOutboxRelay.
+ * Пока outbox.enabled выключен, релея нет, и события не пишутся, чтобы таблица не росла без потребителя.
+ */
+@Service
+public class TransactionOutboxService {
+
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final boolean enabled;
+
+    public TransactionOutboxService(TransactionOutboxRepository transactionOutboxRepository,
+                                    @Value("${outbox.enabled:false}") boolean enabled) {
+        this.transactionOutboxRepository = transactionOutboxRepository;
+        this.enabled = enabled;
+    }
+
+    public void record(Transaction transaction) {
+        if (!enabled) {
+            return;
+        }
+        transactionOutboxRepository.append(List.of(new TransactionEvent(
+                null,
+                transaction.getId(),
+                transaction.getTransactionType().name(),
+                transaction.getTransactionStatus().name(),
+                transaction.getAmount(),
+                transaction.getCurrency(),
+                transaction.getSourceCard().getId(),
+                transaction.getTargetCard() == null ? null : transaction.getTargetCard().getId(),
+                transaction.getCreatedAt() == null ? LocalDateTime.now() : transaction.getCreatedAt())));
+    }
+
+    /**
+     * @param transactionIds id вставленных переводов в порядке transfers
+     */
+    public void recordTransfers(List<TransferRow> transfers, List<Long> transactionIds) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<TransactionEvent> events = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRow transfer = transfers.get(i);
+            events.add(new TransactionEvent(null, transactionIds.get(i), TransactionType.TRANSFER.name(),
+                    TransactionStatus.SUCCESS.name(), transfer.amount(), transfer.currency(),
+                    transfer.sourceCardId(), transfer.targetCardId(), now));
+        }
+        transactionOutboxRepository.append(events);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+
+/**
+ * Обслуживание месячных секций transaction: заранее создаёт секции на premake-months месяцев вперёд,
+ * чтобы вставка никогда не осталась без секции, и, если включено archive-enabled, отправляет в архив секции
+ * старше retention-months месяцев. Архивирование выключено по умолчанию: решение о сроке хранения принимает эксплуатация.
+ * Архивная секция отсоединяется от transaction и переносится в схему transaction_archive
+ * (и в archive-tablespace, если он задан), поэтому запросы и VACUUM горячей таблицы её больше не затрагивают.
+ * На нескольких узлах обслуживание выполняет тот, кто первым взял advisory-блокировку.
+ */
+@Slf4j
+@Service
+public class TransactionPartitionService {
+
+    private final TransactionPartitionRepository transactionPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean archiveEnabled;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final String archiveTablespace;
+    private final String archiveLockTimeout;
+
+    public TransactionPartitionService(TransactionPartitionRepository transactionPartitionRepository,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${card.transaction-partitions.enabled:true}") boolean enabled,
+                                       @Value("${card.transaction-partitions.archive-enabled:false}") boolean archiveEnabled,
+                                       @Value("${card.transaction-partitions.premake-months:3}") int premakeMonths,
+                                       @Value("${card.transaction-partitions.retention-months:24}") int retentionMonths,
+                                       @Value("${card.transaction-partitions.archive-tablespace:}") String archiveTablespace,
+                                       @Value("${card.transaction-partitions.archive-lock-timeout:2s}") String archiveLockTimeout) {
+        if (retentionMonths < 1) {
+            throw new IllegalArgumentException("Transaction partition retention must be at least one month");
+        }
+        if (!archiveTablespace.isBlank() && !archiveTablespace.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid transaction archive tablespace: " + archiveTablespace);
+        }
+        this.transactionPartitionRepository = transactionPartitionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.archiveEnabled = archiveEnabled;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.archiveTablespace = archiveTablespace.isBlank() ? null : archiveTablespace;
+        this.archiveLockTimeout = archiveLockTimeout;
+    }
+
+    @Scheduled(fixedDelayString = "${card.transaction-partitions.interval-millis:3600000}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> createPartitions(current));
+        } catch (RuntimeException e) {
+            log.error("Failed to create transaction partitions", e);
+        }
+        if (!archiveEnabled) {
+            return;
+        }
+
+        YearMonth oldestKept = current.minusMonths(retentionMonths - 1);
+        for (YearMonth month : transactionPartitionRepository.findPartitions()) {
+            if (!month.isBefore(oldestKept)) {
+                break;
+            }
+            // Отсоединение держит исключительную блокировку transaction до коммита, поэтому каждая секция - в своей транзакции
+            try {
+                transactionTemplate.executeWithoutResult(status -> archive(month));
+            } catch (RuntimeException e) {
+                log.warn("Failed to archive transaction partition {}", month, e);
+                return;
+            }
+        }
+    }
+
+    private void createPartitions(YearMonth current) {
+        if (!transactionPartitionRepository.tryLock()) {
+            return;
+        }
+        for (int i = 0; i <= premakeMonths; i++) {
+            transactionPartitionRepository.createPartition(current.plusMonths(i));
+        }
+    }
+
+    private void archive(YearMonth month) {
+        if (!transactionPartitionRepository.tryLock() || !transactionPartitionRepository.findPartitions().contains(month)) {
+            return;
+        }
+        transactionPartitionRepository.archivePartition(month, archiveTablespace, archiveLockTimeout);
+        log.info("Transaction partition {} moved to archive", month);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.card.encryptor.EncryptorException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Слепой индекс номера карты: HMAC-SHA256 от номера на отдельном ключе.
+ * Значение детерминировано, поэтому по нему ищется карта, а сам номер
+ * может храниться с любым (в том числе рандомизированным) шифрованием.
+ */
+@Component
+public class CardNumberBlindIndexUtil {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final SecretKeySpec indexKey;
+    private final ThreadLocal<Mac> mac;
+
+    public CardNumberBlindIndexUtil(@Value("${card.blind-index.key}") String key) {
+        this.indexKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::initMac);
+    }
+
+    public String hashCardNumber(String cardNumber) {
+        return HEX.formatHex(mac.get().doFinal(cardNumber.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac initMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(indexKey);
+            return instance;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new EncryptorException(e.getMessage());
+        }
+    }
+}
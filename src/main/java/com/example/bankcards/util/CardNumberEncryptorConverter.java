@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 public class CardNumberEncryptorConverter implements AttributeConverter<String, String> {
 
     private final CardNumberEncryptorUtil cardNumberEncryptorUtil;
+    private final DecryptedCardNumberCache decryptedCardNumberCache;
 
     @Override
     public String convertToDatabaseColumn(String cardNumber) {
@@ -25,6 +26,6 @@ public class CardNumberEncryptorConverter implements AttributeConverter<String,
         if (dbData == null) {
             return null;
         }
-        return cardNumberEncryptorUtil.decryptCardNumber(dbData);
+        return decryptedCardNumberCache.get(dbData, cardNumberEncryptorUtil::decryptCardNumber);
     }
 }
@@ -9,18 +9,31 @@ import org.springframework.beans.factory.annotation.Value;
 import javax.crypto.*;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.InvalidKeyException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.util.Base64;
 
-@Getter
 @Component
 public class CardNumberEncryptorUtil {
 
+    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    @Getter
     private final SecretKeySpec secretKey;
 
+    /**
+     * Инициализированные шифры на поток: Cipher не потокобезопасен, а getInstance + init
+     * на каждую загрузку сущности стоят дороже самого шифрования 16 байт.
+     * После doFinal шифр возвращается в проинициализированное состояние и готов к повторному использованию.
+     */
+    private final ThreadLocal<Cipher> encryptCipher;
+    private final ThreadLocal<Cipher> decryptCipher;
+
 
     public CardNumberEncryptorUtil(@Value("${card.encryption.key}") String password,
                                    @Value("${card.encryption.salt}") String salt) {
@@ -33,30 +46,46 @@ public class CardNumberEncryptorUtil {
         } catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
             throw new EncryptorException(e.getMessage());
         }
+        this.encryptCipher = ThreadLocal.withInitial(() -> initCipher(Cipher.ENCRYPT_MODE));
+        this.decryptCipher = ThreadLocal.withInitial(() -> initCipher(Cipher.DECRYPT_MODE));
     }
 
     public String encryptCardNumber(String cardNumber) {
+        return BASE64_ENCODER.encodeToString(encrypt(cardNumber.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public String decryptCardNumber(String dbCardNumber) {
+        return new String(decryptToBytes(dbCardNumber), StandardCharsets.UTF_8);
+    }
+
+    public byte[] encrypt(byte[] cardNumber) {
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            byte[] encrypted = cipher.doFinal(cardNumber.getBytes());
-            return Base64.getEncoder().encodeToString(encrypted);
-        } catch (IllegalBlockSizeException | BadPaddingException | InvalidKeyException | NoSuchAlgorithmException |
-                 NoSuchPaddingException e) {
+            return encryptCipher.get().doFinal(cardNumber);
+        } catch (GeneralSecurityException e) {
+            encryptCipher.remove();
             throw new EncryptorException(e.getMessage());
         }
     }
 
-    public String decryptCardNumber(String dbCardNumber) {
+    /**
+     * Расшифровка без промежуточной строки: вызывающий код может обнулить массив после использования.
+     */
+    public byte[] decryptToBytes(String dbCardNumber) {
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            byte[] decoded = Base64.getDecoder().decode(dbCardNumber);
-            byte[] decrypted = cipher.doFinal(decoded);
-            return new String(decrypted);
-        } catch (IllegalBlockSizeException | BadPaddingException | InvalidKeyException | NoSuchAlgorithmException |
-                 NoSuchPaddingException e) {
+            return decryptCipher.get().doFinal(BASE64_DECODER.decode(dbCardNumber));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            decryptCipher.remove();
             throw new DecryptException(e.getMessage());
         }
     }
+
+    private Cipher initCipher(int mode) {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(mode, secretKey);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw mode == Cipher.ENCRYPT_MODE ? new EncryptorException(e.getMessage()) : new DecryptException(e.getMessage());
+        }
+    }
 }
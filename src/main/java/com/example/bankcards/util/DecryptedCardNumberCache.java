@@ -0,0 +1,110 @@
+package com.example.bankcards.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Кэш расшифрованных номеров карт (ciphertext -> номер) для CardNumberEncryptorConverter.
+ * Чтение без блокировок (ConcurrentHashMap), запись ограничена по времени жизни и по размеру:
+ * при переполнении сначала удаляются просроченные записи, затем произвольные до max-size.
+ * Включается свойством card.encryption.cache.enabled.
+ */
+@Slf4j
+@Component
+public class DecryptedCardNumberCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<String, CachedCardNumber> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DecryptedCardNumberCache(@Value("${card.encryption.cache.enabled:false}") boolean enabled,
+                                    @Value("${card.encryption.cache.max-size:10000}") int maxSize,
+                                    @Value("${card.encryption.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    public String get(String dbCardNumber, Function<String, String> decryptor) {
+        if (!enabled) {
+            return decryptor.apply(dbCardNumber);
+        }
+
+        long now = System.currentTimeMillis();
+        CachedCardNumber cached = entries.get(dbCardNumber);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                hits.incrementAndGet();
+                return cached.value();
+            }
+            if (entries.remove(dbCardNumber, cached)) {
+                evictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        String cardNumber = decryptor.apply(dbCardNumber);
+        entries.put(dbCardNumber, new CachedCardNumber(cardNumber, now + ttlMillis));
+        if (entries.size() > maxSize) {
+            evictOverflow(now);
+        }
+        return cardNumber;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evictOverflow(long now) {
+        entries.entrySet().removeIf(entry -> {
+            boolean expired = entry.getValue().expiresAt() <= now;
+            if (expired) {
+                evictions.incrementAndGet();
+            }
+            return expired;
+        });
+
+        Iterator<Map.Entry<String, CachedCardNumber>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private record CachedCardNumber(String value, long expiresAt) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.idempotency.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FailoverIdempotencyStoreTest {
+
+    private static final byte[] RESULT = "result".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private IdempotencyStore primary;
+
+    @Mock
+    private IdempotencyStore fallback;
+
+    private FailoverIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new FailoverIdempotencyStore(primary, fallback);
+    }
+
+    @DisplayName("При недоступном основном хранилище резерв берётся в резервном.")
+    @Test
+    void reserveOrGet_PrimaryDown_UsesFallback() {
+        when(primary.reserveOrGet("key", 60)).thenThrow(new QueryTimeoutException("down"));
+
+        assertNull(store.reserveOrGet("key", 60));
+
+        verify(fallback).reserveOrGet("key", 60);
+    }
+
+    @DisplayName("Результат, сохранённый в резервное хранилище, переносится в основное, когда оно снова доступно.")
+    @Test
+    void save_PrimaryDown_ReplaysResultToPrimary() {
+        doThrow(new QueryTimeoutException("down")).doNothing().when(primary).save(eq("key"), eq(RESULT), anyLong());
+
+        store.save("key", RESULT, 60);
+        verify(fallback).save("key", RESULT, 60);
+
+        IdempotencyRecord record = store.reserveOrGet("other", 60);
+
+        assertNull(record);
+        verify(primary, times(2)).save(eq("key"), eq(RESULT), longThat(ttl -> ttl > 0 && ttl <= 60));
+        verify(primary).reserveOrGet("other", 60);
+    }
+
+    @DisplayName("Пока результат не перенесён, повторный запрос получает его, а не маркер основного хранилища.")
+    @Test
+    void reserveOrGet_PendingResult_ReturnsResult() {
+        doThrow(new QueryTimeoutException("down")).when(primary).save(eq("key"), eq(RESULT), anyLong());
+
+        store.save("key", RESULT, 60);
+        IdempotencyRecord record = store.reserveOrGet("key", 60);
+
+        assertArrayEquals(RESULT, record.result());
+        verify(fallback, never()).reserveOrGet(any(), anyLong());
+    }
+
+    @DisplayName("Продление проверяет резервное хранилище, если основное резерв не продлило.")
+    @Test
+    void renew_PrimaryNotRenewed_ChecksFallback() {
+        when(primary.renew("key", 60)).thenReturn(false);
+        when(fallback.renew("key", 60)).thenReturn(true);
+
+        assertTrue(store.renew("key", 60));
+    }
+
+    @DisplayName("Резерв снимается в обоих хранилищах, даже если основное недоступно.")
+    @Test
+    void release_PrimaryDown_ReleasesFallback() {
+        doThrow(new QueryTimeoutException("down")).when(primary).release("key");
+
+        store.release("key");
+
+        verify(fallback).release("key");
+    }
+}
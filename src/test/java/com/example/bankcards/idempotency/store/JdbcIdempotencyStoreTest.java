@@ -0,0 +1,129 @@
+package com.example.bankcards.idempotency.store;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет резерв, сохранение, продление и очистку ключей идемпотентности во встроенном PostgreSQL.
+ */
+public class JdbcIdempotencyStoreTest {
+
+    private static final byte[] RESULT = "result".getBytes(StandardCharsets.UTF_8);
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    private static JdbcIdempotencyStore store;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        try (Connection connection = postgres.getPostgresDatabase().getConnection()) {
+            Liquibase liquibase = new Liquibase("db/idempotency-changelog.xml",
+                    new ClassLoaderResourceAccessor(), new JdbcConnection(connection));
+            liquibase.update(new Contexts(), new LabelExpression());
+        }
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        store = new JdbcIdempotencyStore(jdbcTemplate, 2);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @BeforeEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM idempotency_record");
+    }
+
+    @DisplayName("Первый запрос резервирует ключ, повторный получает запись \"в процессе\".")
+    @Test
+    void reserveOrGet_Reserved_ReturnsInFlight() {
+        assertNull(store.reserveOrGet("key", 60));
+
+        IdempotencyRecord record = store.reserveOrGet("key", 60);
+
+        assertNotNull(record);
+        assertTrue(record.isInFlight());
+    }
+
+    @DisplayName("После сохранения результата повторный запрос получает результат.")
+    @Test
+    void reserveOrGet_Saved_ReturnsResult() {
+        store.reserveOrGet("key", 60);
+        store.save("key", RESULT, 60);
+
+        IdempotencyRecord record = store.reserveOrGet("key", 60);
+
+        assertArrayEquals(RESULT, record.result());
+        assertTrue(record.remainingTtlMillis() > 0);
+    }
+
+    @DisplayName("Просроченный резерв перезаписывается новым.")
+    @Test
+    void reserveOrGet_Expired_ReservesAgain() {
+        insertExpired("key", null);
+
+        assertNull(store.reserveOrGet("key", 60));
+    }
+
+    @DisplayName("Продлевается только действующий резерв без результата.")
+    @Test
+    void renew_OnlyInFlight() {
+        store.reserveOrGet("reserved", 60);
+        store.save("saved", RESULT, 60);
+        insertExpired("expired", null);
+
+        assertTrue(store.renew("reserved", 120));
+        assertFalse(store.renew("saved", 120));
+        assertFalse(store.renew("expired", 120));
+        assertFalse(store.renew("missing", 120));
+    }
+
+    @DisplayName("Снятие резерва не удаляет сохранённый результат.")
+    @Test
+    void release_KeepsSavedResult() {
+        store.reserveOrGet("reserved", 60);
+        store.save("saved", RESULT, 60);
+
+        store.release("reserved");
+        store.release("saved");
+
+        assertNull(store.reserveOrGet("reserved", 60));
+        assertArrayEquals(RESULT, store.reserveOrGet("saved", 60).result());
+    }
+
+    @DisplayName("Очистка удаляет все просроченные записи пачками и не трогает действующие.")
+    @Test
+    void removeExpired_DeletesInBatches() {
+        for (int i = 0; i < 5; i++) {
+            insertExpired("expired-" + i, RESULT);
+        }
+        store.save("saved", RESULT, 60);
+
+        assertEquals(5, store.removeExpired());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM idempotency_record", Integer.class));
+    }
+
+    private static void insertExpired(String key, byte[] result) {
+        jdbcTemplate.update("INSERT INTO idempotency_record (idempotency_key, result, expires_at) " +
+                "VALUES (?, ?, now() - INTERVAL '1 second')", key, result);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bankcards.idempotency.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalIdempotencyStoreTest {
+
+    private static final byte[] RESULT = "result".getBytes(StandardCharsets.UTF_8);
+
+    private LocalIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new LocalIdempotencyStore(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @DisplayName("Первый запрос резервирует ключ, повторный получает запись \"в процессе\", после сохранения - результат.")
+    @Test
+    void reserveOrGet_ReservedThenSaved() {
+        assertNull(store.reserveOrGet("key", 60));
+        assertTrue(store.reserveOrGet("key", 60).isInFlight());
+
+        store.save("key", RESULT, 60);
+
+        assertArrayEquals(RESULT, store.reserveOrGet("key", 60).result());
+    }
+
+    @DisplayName("Просроченный резерв не продлевается и перезаписывается новым.")
+    @Test
+    void renew_Expired_ReturnsFalse() {
+        store.reserveOrGet("key", 0);
+
+        assertFalse(store.renew("key", 60));
+        assertNull(store.reserveOrGet("key", 60));
+    }
+
+    @DisplayName("Продлевается только резерв без результата.")
+    @Test
+    void renew_OnlyInFlight() {
+        store.reserveOrGet("reserved", 60);
+        store.save("saved", RESULT, 60);
+
+        assertTrue(store.renew("reserved", 120));
+        assertFalse(store.renew("saved", 120));
+        assertFalse(store.renew("missing", 120));
+    }
+
+    @DisplayName("Снятие резерва не удаляет сохранённый результат.")
+    @Test
+    void release_KeepsSavedResult() {
+        store.reserveOrGet("reserved", 60);
+        store.save("saved", RESULT, 60);
+
+        store.release("reserved");
+        store.release("saved");
+
+        assertNull(store.reserveOrGet("reserved", 60));
+        assertArrayEquals(RESULT, store.reserveOrGet("saved", 60).result());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.bankcards.idempotency.store;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет Lua-скрипты резерва, продления и снятия резерва на настоящем Redis.
+ * Нужен Redis: REDIS_TEST_HOST, REDIS_TEST_PORT (по умолчанию 6379). Ключи удаляются перед каждым тестом.
+ */
+@EnabledIfEnvironmentVariable(named = "REDIS_TEST_HOST", matches = ".+")
+public class RedisIdempotencyStoreTest {
+
+    private static final byte[] RESULT = "result".getBytes(StandardCharsets.UTF_8);
+    private static final String[] KEYS = {"reserved", "saved", "expired", "missing"};
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, byte[]> redisTemplate;
+    private static RedisIdempotencyStore store;
+
+    @BeforeAll
+    static void setUp() {
+        String port = System.getenv("REDIS_TEST_PORT");
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                System.getenv("REDIS_TEST_HOST"), port == null ? 6379 : Integer.parseInt(port)));
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.afterPropertiesSet();
+        store = new RedisIdempotencyStore(redisTemplate);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @BeforeEach
+    void cleanUp() {
+        for (String key : KEYS) {
+            redisTemplate.delete("idempotency:" + key);
+        }
+    }
+
+    @DisplayName("Скрипт резерва ставит маркер один раз, после сохранения возвращает результат с PTTL.")
+    @Test
+    void reserveOrGet_ReservedThenSaved() {
+        assertNull(store.reserveOrGet("reserved", 60));
+        assertTrue(store.reserveOrGet("reserved", 60).isInFlight());
+
+        store.save("saved", RESULT, 60);
+        IdempotencyRecord record = store.reserveOrGet("saved", 60);
+
+        assertArrayEquals(RESULT, record.result());
+        assertTrue(record.remainingTtlMillis() > 0 && record.remainingTtlMillis() <= 60_000);
+    }
+
+    @DisplayName("Скрипт продления продлевает только маркер \"в процессе\".")
+    @Test
+    void renew_OnlyInFlight() {
+        store.reserveOrGet("reserved", 5);
+        store.save("saved", RESULT, 5);
+
+        assertTrue(store.renew("reserved", 120));
+        assertFalse(store.renew("saved", 120));
+        assertFalse(store.renew("missing", 120));
+        assertTrue(redisTemplate.getExpire("idempotency:reserved", TimeUnit.SECONDS) > 5);
+        assertTrue(redisTemplate.getExpire("idempotency:saved", TimeUnit.SECONDS) <= 5);
+    }
+
+    @DisplayName("Скрипт снятия резерва удаляет только маркер \"в процессе\".")
+    @Test
+    void release_KeepsSavedResult() {
+        store.reserveOrGet("reserved", 60);
+        store.save("saved", RESULT, 60);
+
+        store.release("reserved");
+        store.release("saved");
+
+        assertNull(store.reserveOrGet("reserved", 60));
+        assertArrayEquals(RESULT, store.reserveOrGet("saved", 60).result());
+    }
+}
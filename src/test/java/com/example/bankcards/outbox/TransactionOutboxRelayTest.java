@@ -0,0 +1,96 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.outbox.sink.InMemoryTransactionEventSink;
+import com.example.bankcards.outbox.sink.TransactionEventSink;
+import com.example.bankcards.repository.TransactionOutboxRepository;
+import com.example.bankcards.repository.TransactionOutboxRepository.ClaimedEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionOutboxRelayTest {
+
+    private static final int BATCH_SIZE = 2;
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    @Mock
+    private TransactionOutboxRepository transactionOutboxRepository;
+
+    @DisplayName("Доставленный пакет удаляется из outbox, полный пакет забирается следующим без паузы.")
+    @Test
+    void relayBatch_Published_DeletesEvents() {
+        InMemoryTransactionEventSink sink = new InMemoryTransactionEventSink();
+        TransactionOutboxRelay relay = relay(sink);
+        when(transactionOutboxRepository.claim(0, 2, BATCH_SIZE, 30))
+                .thenReturn(List.of(claimed(1L, 1), claimed(2L, 1)));
+
+        long pause = relay.relayBatch(0);
+
+        assertEquals(0, pause);
+        assertEquals(List.of(1L, 2L), sink.events().stream().map(TransactionEvent::eventId).toList());
+        verify(transactionOutboxRepository).delete(List.of(1L, 2L));
+        verify(transactionOutboxRepository, never()).retryLater(anyList(), anyLong());
+    }
+
+    @DisplayName("При ошибке получателя пакет возвращается в outbox с экспоненциальной задержкой.")
+    @Test
+    void relayBatch_SinkFails_RetriesWithBackoff() {
+        TransactionEventSink failingSink = events -> {
+            throw new IllegalStateException("Sink unavailable");
+        };
+        TransactionOutboxRelay relay = relay(failingSink);
+        when(transactionOutboxRepository.claim(1, 2, BATCH_SIZE, 30)).thenReturn(List.of(claimed(3L, 3)));
+
+        long pause = relay.relayBatch(1);
+
+        assertEquals(4000, pause);
+        verify(transactionOutboxRepository).retryLater(List.of(3L), 4000);
+        verify(transactionOutboxRepository, never()).delete(anyList());
+    }
+
+    @DisplayName("Без событий обработчик ждёт poll-interval-millis.")
+    @Test
+    void relayBatch_NothingClaimed_WaitsPollInterval() {
+        TransactionOutboxRelay relay = relay(new InMemoryTransactionEventSink());
+        when(transactionOutboxRepository.claim(0, 2, BATCH_SIZE, 30)).thenReturn(List.of());
+
+        assertEquals(POLL_INTERVAL_MILLIS, relay.relayBatch(0));
+        verify(transactionOutboxRepository, never()).delete(anyList());
+    }
+
+    @DisplayName("Обработчики запускаются только в start и останавливаются в stop.")
+    @Test
+    void lifecycle_StartStop_RunsWorkersBetweenCalls() {
+        TransactionOutboxRelay relay = relay(new InMemoryTransactionEventSink());
+        assertFalse(relay.isRunning());
+        verifyNoInteractions(transactionOutboxRepository);
+
+        relay.start();
+        verify(transactionOutboxRepository, timeout(1000).atLeastOnce()).claim(anyInt(), eq(2), eq(BATCH_SIZE), eq(30L));
+        relay.stop();
+
+        assertFalse(relay.isRunning());
+    }
+
+    private TransactionOutboxRelay relay(TransactionEventSink sink) {
+        return new TransactionOutboxRelay(transactionOutboxRepository, sink,
+                BATCH_SIZE, 2, POLL_INTERVAL_MILLIS, 30, 1000, 60000);
+    }
+
+    private static ClaimedEvent claimed(long eventId, int attempts) {
+        return new ClaimedEvent(new TransactionEvent(eventId, eventId + 100, "TRANSFER", "SUCCESS",
+                new BigDecimal("10.00"), "RUB", 1L, 2L, LocalDateTime.now()), attempts);
+    }
+}
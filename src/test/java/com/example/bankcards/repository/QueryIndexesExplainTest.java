@@ -0,0 +1,199 @@
+package com.example.bankcards.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет по EXPLAIN, что запросы репозиториев обслуживаются индексами, которые есть после всех миграций.
+ * Полный changelog накатывается Liquibase на встроенный PostgreSQL, таблицы заполняются данными
+ * с разными владельцами и статусами и анализируются, так что планировщик выбирает индекс по реальной статистике.
+ * У карты 1 длинная история операций, у клиента 2 много карт (корпоративный клиент): первые страницы
+ * таких выборок должны читаться по индексу без сортировки.
+ * На секционированной transaction план ссылается на индексы секций, они сопоставляются с родительским индексом.
+ */
+public class QueryIndexesExplainTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int CUSTOMERS = 5_000;
+    private static final int CARDS = 50_000;
+    private static final int TRANSACTIONS = 100_000;
+
+    private static final String PARENT_INDEX = """
+            SELECT COALESCE(parent.relname, child.relname)
+            FROM pg_class child
+            LEFT JOIN pg_inherits inheritance ON inheritance.inhrelid = child.oid
+            LEFT JOIN pg_class parent ON parent.oid = inheritance.inhparent
+            WHERE child.relname = ?
+            """;
+
+    private static EmbeddedPostgres postgres;
+    private static Connection connection;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        connection = postgres.getPostgresDatabase().getConnection();
+
+        Liquibase liquibase = new Liquibase("db/migration/db-changelog.xml",
+                new ClassLoaderResourceAccessor(), new JdbcConnection(connection));
+        liquibase.setChangeLogParameter("cardEncryptionKey", "ENCRYPTION_SECRET");
+        liquibase.setChangeLogParameter("cardEncryptionSalt", "1961000000abcdef");
+        liquibase.setChangeLogParameter("cardBlindIndexKey", "BLIND_INDEX_SECRET");
+        liquibase.update(new Contexts(), new LabelExpression());
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO customer (id, name, email, password, is_account_non_expired, is_account_non_locked,
+                                          is_credentials_non_expired, is_enabled)
+                    SELECT i, 'customer ' || i, 'customer' || i || '@mail.ru', 'password', true, true, true, true
+                    FROM generate_series(2, %d) AS i
+                    """.formatted(CUSTOMERS + 1));
+            statement.execute("""
+                    INSERT INTO card (id, card_number, card_number_hash, owner_id, expiry_date, card_status,
+                                      card_balance, currency, created_at, version)
+                    SELECT i, 'encrypted-' || i, 'hash-' || i,
+                           CASE WHEN i %% 4 = 0 THEN 2 ELSE 2 + i %% %d END, DATE '2030-01-01',
+                           CASE WHEN i %% 10 = 0 THEN 'BLOCKED' WHEN i %% 25 = 0 THEN 'CLOSED' ELSE 'ACTIVE' END,
+                           100.00, 'RUB', now() - i * INTERVAL '1 minute', 0
+                    FROM generate_series(1, %d) AS i
+                    """.formatted(CUSTOMERS, CARDS));
+            statement.execute("""
+                    INSERT INTO transaction (id, amount, currency, transaction_status, transaction_type,
+                                             source_card_id, target_card_id, created_at, updated_at, version)
+                    SELECT i, 10.00, 'RUB', 'SUCCESS', 'TRANSFER',
+                           CASE WHEN i %% 5 = 0 THEN 1 ELSE 1 + i %% %d END,
+                           CASE WHEN i %% 5 = 1 THEN 1 ELSE 1 + (i * 7) %% %d END,
+                           date_trunc('month', now()) + i * INTERVAL '1 second', NULL, 0
+                    FROM generate_series(1, %d) AS i
+                    """.formatted(CARDS, CARDS, TRANSACTIONS));
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @DisplayName("Первая страница истории операций карты читается по индексу без сортировки.")
+    @Test
+    void findFirstBySourceCardId_UsesSourceCardCreatedAtIdIndex() throws Exception {
+        assertOrderedIndexScan("SELECT * FROM transaction WHERE source_card_id = 1 ORDER BY created_at, id LIMIT 11",
+                "ix_transaction_source_card_id_created_at_id");
+    }
+
+    @DisplayName("Страница истории после курсора читается по индексу с условием на (created_at, id).")
+    @Test
+    void findNextBySourceCardId_SeeksByIndexCondition() throws Exception {
+        String query = """
+                SELECT * FROM transaction
+                WHERE source_card_id = 1 AND (created_at, id) > ('2024-05-01 12:00:00', 7)
+                ORDER BY created_at, id
+                LIMIT 11
+                """;
+        assertOrderedIndexScan(query, "ix_transaction_source_card_id_created_at_id");
+        assertTrue(explain(query).stream().anyMatch(node -> node.path("Index Cond").asText().contains("created_at")),
+                () -> "Cursor is not an index condition in: " + query);
+    }
+
+    @DisplayName("Входящие переводы карты читаются по индексу (target_card_id, created_at, id) без сортировки.")
+    @Test
+    void findFirstByTargetCardId_UsesTargetCardCreatedAtIdIndex() throws Exception {
+        assertOrderedIndexScan("SELECT * FROM transaction WHERE target_card_id = 1 ORDER BY created_at, id LIMIT 11",
+                "ix_transaction_target_card_id_created_at_id");
+    }
+
+    @DisplayName("Карты клиента с редким статусом читаются по индексу (owner_id, card_status, created_at) без сортировки.")
+    @Test
+    void findByCustomerIdAndStatus_UsesOwnerStatusCreatedAtIndex() throws Exception {
+        assertOrderedIndexScan(
+                "SELECT * FROM card WHERE owner_id = 2 AND card_status = 'BLOCKED' ORDER BY created_at LIMIT 10",
+                "ix_card_owner_id_card_status_created_at");
+    }
+
+    @DisplayName("Все карты клиента читаются по индексу без сортировки.")
+    @Test
+    void findByCustomerId_UsesOwnerCreatedAtIndex() throws Exception {
+        assertOrderedIndexScan("SELECT * FROM card WHERE owner_id = 2 ORDER BY created_at LIMIT 10",
+                "ix_card_owner_id_created_at");
+    }
+
+    @DisplayName("Карта ищется по blind index номера.")
+    @Test
+    void findByCardNumberHash_UsesUniqueHashIndex() throws Exception {
+        assertIndexUsed("SELECT * FROM card WHERE card_number_hash = 'hash'", "ux_card_card_number_hash");
+    }
+
+    @DisplayName("Клиент ищется по email.")
+    @Test
+    void findByEmail_UsesUniqueEmailIndex() throws Exception {
+        assertIndexUsed("SELECT * FROM customer WHERE email = 'customer@gmail.com'", "ux_customer_email");
+    }
+
+    private void assertIndexUsed(String query, String indexName) throws Exception {
+        List<JsonNode> nodes = explain(query);
+        List<String> usedIndexes = new ArrayList<>();
+        for (JsonNode node : nodes) {
+            if (node.has("Index Name")) {
+                usedIndexes.add(parentIndex(node.path("Index Name").asText()));
+            }
+        }
+        assertTrue(usedIndexes.contains(indexName), () -> indexName + " is not used by: " + query + "\n" + nodes);
+    }
+
+    private String parentIndex(String indexName) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(PARENT_INDEX)) {
+            statement.setString(1, indexName);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString(1) : indexName;
+            }
+        }
+    }
+
+    private void assertOrderedIndexScan(String query, String indexName) throws Exception {
+        assertIndexUsed(query, indexName);
+        List<JsonNode> nodes = explain(query);
+        assertFalse(nodes.stream().anyMatch(node -> "Sort".equals(node.path("Node Type").asText())),
+                () -> "Unexpected sort in: " + query + "\n" + nodes);
+    }
+
+    private List<JsonNode> explain(String query) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN (FORMAT JSON) " + query)) {
+            rs.next();
+            List<JsonNode> nodes = new ArrayList<>();
+            collectPlanNodes(MAPPER.readTree(rs.getString(1)).get(0).get("Plan"), nodes);
+            return nodes;
+        }
+    }
+
+    private void collectPlanNodes(JsonNode plan, List<JsonNode> nodes) {
+        nodes.add(plan);
+        plan.path("Plans").forEach(child -> collectPlanNodes(child, nodes));
+    }
+}
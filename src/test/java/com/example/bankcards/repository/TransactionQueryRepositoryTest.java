@@ -0,0 +1,123 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transaction.TransactionCursor;
+import com.example.bankcards.dto.transaction.TransactionFilter;
+import com.example.bankcards.entity.enums.TransactionDirection;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.entity.operations.Transaction;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверяет фильтры истории операций на секционированной таблице transaction во встроенном PostgreSQL.
+ */
+public class TransactionQueryRepositoryTest {
+
+    private static final long CARD = 1L;
+    private static final LocalDateTime MONTH_START = LocalDate.now().withDayOfMonth(1).atStartOfDay();
+
+    private static EmbeddedPostgres postgres;
+    private static TransactionQueryRepository repository;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        try (Connection connection = postgres.getPostgresDatabase().getConnection()) {
+            Liquibase liquibase = new Liquibase("db/transaction-query-changelog.xml",
+                    new ClassLoaderResourceAccessor(), new JdbcConnection(connection));
+            liquibase.setChangeLogParameter("cardEncryptionKey", "ENCRYPTION_SECRET");
+            liquibase.setChangeLogParameter("cardEncryptionSalt", "1961000000abcdef");
+            liquibase.setChangeLogParameter("cardBlindIndexKey", "BLIND_INDEX_SECRET");
+            liquibase.update(new Contexts(), new LabelExpression());
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        insert(jdbcTemplate, 1, "100.00", TransactionStatus.SUCCESS, TransactionType.TRANSFER, CARD, 2L, 1);
+        insert(jdbcTemplate, 2, "50.00", TransactionStatus.SUCCESS, TransactionType.TRANSFER, 2L, CARD, 2);
+        insert(jdbcTemplate, 3, "30.00", TransactionStatus.FAIL, TransactionType.DEBIT, CARD, null, 3);
+        insert(jdbcTemplate, 4, "500.00", TransactionStatus.SUCCESS, TransactionType.DEBIT, CARD, null, 4);
+        insert(jdbcTemplate, 5, "70.00", TransactionStatus.SUCCESS, TransactionType.TRANSFER, 3L, 2L, 5);
+        repository = new TransactionQueryRepository(jdbcTemplate);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        postgres.close();
+    }
+
+    @DisplayName("Без направления возвращаются исходящие и входящие операции карты в порядке (createdAt, id).")
+    @Test
+    void findPage_NoFilter_ReturnsOutgoingAndIncoming() {
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(repository.findPage(CARD, TransactionFilter.NONE, null, 10)));
+    }
+
+    @DisplayName("Направление IN возвращает только входящие переводы.")
+    @Test
+    void findPage_Incoming_ReturnsTargetCardTransfers() {
+        TransactionFilter filter = new TransactionFilter(null, null, null, null, TransactionDirection.IN, null, null);
+
+        assertEquals(List.of(2L), ids(repository.findPage(CARD, filter, null, 10)));
+    }
+
+    @DisplayName("Тип и статус фильтруются в запросе.")
+    @Test
+    void findPage_TypeAndStatus_ReturnsMatching() {
+        TransactionFilter filter = new TransactionFilter(null, null, TransactionType.DEBIT, TransactionStatus.SUCCESS,
+                TransactionDirection.OUT, null, null);
+
+        assertEquals(List.of(4L), ids(repository.findPage(CARD, filter, null, 10)));
+    }
+
+    @DisplayName("Период [from, to) и диапазон сумм ограничивают выборку.")
+    @Test
+    void findPage_PeriodAndAmount_ReturnsMatching() {
+        TransactionFilter filter = new TransactionFilter(MONTH_START.plusHours(2), MONTH_START.plusHours(4),
+                null, null, null, new BigDecimal("40.00"), new BigDecimal("100.00"));
+
+        assertEquals(List.of(2L), ids(repository.findPage(CARD, filter, null, 10)));
+    }
+
+    @DisplayName("Курсор продолжает выборку после последней отданной операции.")
+    @Test
+    void findPage_Cursor_ContinuesAfterLastRow() {
+        List<Transaction> first = repository.findPage(CARD, TransactionFilter.NONE, null, 2);
+        List<Transaction> second = repository.findPage(CARD, TransactionFilter.NONE,
+                TransactionCursor.after(first.get(1)), 2);
+
+        assertEquals(List.of(1L, 2L), ids(first));
+        assertEquals(List.of(3L, 4L), ids(second));
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, long id, String amount, TransactionStatus status,
+                               TransactionType type, long sourceCardId, Long targetCardId, int hour) {
+        jdbcTemplate.update("""
+                INSERT INTO transaction (id, amount, currency, transaction_status, transaction_type,
+                                         source_card_id, target_card_id, created_at, updated_at, version)
+                VALUES (?, ?, 'RUB', ?, ?, ?, ?, ?, ?, 0)
+                """, id, new BigDecimal(amount), status.name(), type.name(), sourceCardId, targetCardId,
+                Timestamp.valueOf(MONTH_START.plusHours(hour)), Timestamp.valueOf(MONTH_START.plusHours(hour)));
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.DeleteCardRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.card.CardBalanceNotZeroException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AdminCardFunctionTest {
+
+    private static final String CARD_NUMBER = "1234567890123456";
+
+    @Mock
+    private CardRepository cardRepository;
+    @Mock
+    private CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+    @Mock
+    private HotCardBalanceService hotCardBalanceService;
+
+    @InjectMocks
+    private AdminCardFunction adminCardFunction;
+
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        card = new Card();
+        card.setId(1L);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(BigDecimal.ZERO);
+
+        when(cardNumberBlindIndexUtil.hashCardNumber(CARD_NUMBER)).thenReturn("hash");
+        when(cardRepository.findByCardNumberHashWithLock("hash")).thenReturn(Optional.of(card));
+    }
+
+    @DisplayName("Карта с нулевым балансом закрывается.")
+    @Test
+    void deleteCard_ZeroBalance_Closed() {
+        when(hotCardBalanceService.availableBalance(card)).thenReturn(new BigDecimal("0.00"));
+
+        adminCardFunction.deleteCard(new DeleteCardRequest(CARD_NUMBER));
+
+        assertEquals(CardStatus.CLOSED, card.getStatus());
+        verify(cardRepository).save(card);
+    }
+
+    @DisplayName("Карта, у которой остались деньги на card_balance или в слотах горячей карты, не закрывается.")
+    @Test
+    void deleteCard_NonZeroBalance_Rejected() {
+        when(hotCardBalanceService.availableBalance(card)).thenReturn(new BigDecimal("15.00"));
+
+        assertThrows(CardBalanceNotZeroException.class,
+                () -> adminCardFunction.deleteCard(new DeleteCardRequest(CARD_NUMBER)));
+
+        assertEquals(CardStatus.ACTIVE, card.getStatus());
+        verify(cardRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.BulkTransferItemResponse;
+import com.example.bankcards.dto.card.TransferFundsBetweenUserCardsRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.LimitType;
+import com.example.bankcards.exception.card.LimitExhaustedException;
+import com.example.bankcards.repository.BulkTransferRepository;
+import com.example.bankcards.repository.BulkTransferRepository.LockedCard;
+import com.example.bankcards.repository.BulkTransferRepository.TransferRow;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerRepository;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BulkTransferServiceTest {
+
+    private static final String FROM = "1234567890123456";
+    private static final String TO = "9876543210987654";
+
+    @Mock
+    private BulkTransferRepository bulkTransferRepository;
+    @Mock
+    private CardRepository cardRepository;
+    @Mock
+    private LedgerRepository ledgerRepository;
+    @Mock
+    private HotCardBalanceService hotCardBalanceService;
+    @Mock
+    private CardLimitService cardLimitService;
+    @Mock
+    private SpendRollupService spendRollupService;
+    @Mock
+    private TransactionOutboxService transactionOutboxService;
+    @Mock
+    private CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+
+    @InjectMocks
+    private BulkTransferService bulkTransferService;
+
+    private final String customerEmail = "customer@gmail.com";
+    private Card cardFrom;
+    private Card cardTo;
+
+    @BeforeEach
+    void setUp() {
+        cardFrom = card(1L, FROM, "150.00");
+        cardTo = card(2L, TO, "0.00");
+
+        lenient().when(cardNumberBlindIndexUtil.hashCardNumber(anyString()))
+                .thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        lenient().when(bulkTransferRepository.lockCards(any(), eq(customerEmail)))
+                .thenReturn(List.of(new LockedCard(cardFrom, true), new LockedCard(cardTo, true)));
+    }
+
+    private Card card(Long id, String cardNumber, String balance) {
+        Card card = new Card();
+        card.setId(id);
+        card.setCardNumberHash("hash-" + cardNumber);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal(balance));
+        return card;
+    }
+
+    @DisplayName("Часть пакета: отклонённый перевод не мешает остальным, записи идут одним пакетом.")
+    @Test
+    void transferChunk_RejectedTransfer_OthersApplied() {
+        TransferFundsBetweenUserCardsRequest first =
+                new TransferFundsBetweenUserCardsRequest(FROM, TO, new BigDecimal("100.00"), "RUB");
+        TransferFundsBetweenUserCardsRequest tooLarge =
+                new TransferFundsBetweenUserCardsRequest(FROM, TO, new BigDecimal("100.00"), "RUB");
+        TransferFundsBetweenUserCardsRequest last =
+                new TransferFundsBetweenUserCardsRequest(FROM, TO, new BigDecimal("50.00"), "RUB");
+
+        when(bulkTransferRepository.insertTransfers(anyList())).thenReturn(List.of(11L, 12L));
+
+        List<BulkTransferItemResponse> results =
+                bulkTransferService.transferChunk(List.of(first, tooLarge, last), 10, customerEmail);
+
+        assertEquals(List.of(
+                new BulkTransferItemResponse(10, BulkTransferItemResponse.Status.SUCCESS, 11L, null),
+                new BulkTransferItemResponse(11, BulkTransferItemResponse.Status.REJECTED, null, "Insufficient Funds"),
+                new BulkTransferItemResponse(12, BulkTransferItemResponse.Status.SUCCESS, 12L, null)), results);
+        assertEquals(new BigDecimal("0.00"), cardFrom.getBalance());
+        assertEquals(new BigDecimal("150.00"), cardTo.getBalance());
+        verify(bulkTransferRepository).insertTransfers(List.of(
+                new TransferRow(1L, 2L, new BigDecimal("100.00"), "RUB"),
+                new TransferRow(1L, 2L, new BigDecimal("50.00"), "RUB")));
+        verify(bulkTransferRepository).updateBalances(anyCollection());
+        verify(ledgerRepository).append(anyList());
+        verify(spendRollupService).recordTransfers(List.of(
+                new TransferRow(1L, 2L, new BigDecimal("100.00"), "RUB"),
+                new TransferRow(1L, 2L, new BigDecimal("50.00"), "RUB")));
+        verify(transactionOutboxService).recordTransfers(List.of(
+                new TransferRow(1L, 2L, new BigDecimal("100.00"), "RUB"),
+                new TransferRow(1L, 2L, new BigDecimal("50.00"), "RUB")), List.of(11L, 12L));
+    }
+
+    @DisplayName("Часть пакета: перевод сверх лимита расходов отклоняется, карта не списывается.")
+    @Test
+    void transferChunk_LimitExhausted_TransferRejected() {
+        TransferFundsBetweenUserCardsRequest allowed =
+                new TransferFundsBetweenUserCardsRequest(FROM, TO, new BigDecimal("50.00"), "RUB");
+        TransferFundsBetweenUserCardsRequest overLimit =
+                new TransferFundsBetweenUserCardsRequest(FROM, TO, new BigDecimal("60.00"), "RUB");
+        LimitExhaustedException exhausted =
+                new LimitExhaustedException(new BigDecimal("100.00"), LimitType.DAILY, new BigDecimal("50.00"));
+
+        when(cardLimitService.reserve("hash-" + FROM, new BigDecimal("50.00")))
+                .thenReturn(CardLimitService.Reservation.NONE);
+        when(cardLimitService.reserve("hash-" + FROM, new BigDecimal("60.00"))).thenThrow(exhausted);
+        when(bulkTransferRepository.insertTransfers(anyList())).thenReturn(List.of(11L));
+
+        List<BulkTransferItemResponse> results =
+                bulkTransferService.transferChunk(List.of(allowed, overLimit), 0, customerEmail);
+
+        assertEquals(List.of(
+                new BulkTransferItemResponse(0, BulkTransferItemResponse.Status.SUCCESS, 11L, null),
+                new BulkTransferItemResponse(1, BulkTransferItemResponse.Status.REJECTED, null, exhausted.getMessage())),
+                results);
+        assertEquals(new BigDecimal("100.00"), cardFrom.getBalance());
+    }
+
+    @DisplayName("Часть пакета: перевод с чужой карты отклоняется по признаку владельца из запроса блокировки.")
+    @Test
+    void transferChunk_NotOwnedCard_TransferRejected() {
+        TransferFundsBetweenUserCardsRequest transfer =
+                new TransferFundsBetweenUserCardsRequest(TO, FROM, new BigDecimal("10.00"), "RUB");
+        when(bulkTransferRepository.lockCards(any(), eq(customerEmail)))
+                .thenReturn(List.of(new LockedCard(cardFrom, true), new LockedCard(cardTo, false)));
+
+        List<BulkTransferItemResponse> results = bulkTransferService.transferChunk(List.of(transfer), 0, customerEmail);
+
+        assertEquals(BulkTransferItemResponse.Status.REJECTED, results.get(0).status());
+        assertEquals(new BigDecimal("0.00"), cardTo.getBalance());
+        verify(cardLimitService, never()).reserve(anyString(), any());
+        verify(bulkTransferRepository, never()).insertTransfers(anyList());
+    }
+}
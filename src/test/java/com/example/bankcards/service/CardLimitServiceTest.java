@@ -0,0 +1,94 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.card.LimitExhaustedException;
+import com.example.bankcards.limit.store.LocalSpendCounterStore;
+import com.example.bankcards.repository.CardLimitRepository;
+import com.example.bankcards.repository.CardLimitRepository.CardLimit;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.SpendRollupRepository;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CardLimitServiceTest {
+
+    private static final String CARD = "hash-1234567890123456";
+
+    @Mock
+    private CardLimitRepository cardLimitRepository;
+    @Mock
+    private CardRepository cardRepository;
+    @Mock
+    private SpendRollupRepository spendRollupRepository;
+    @Mock
+    private CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+
+    private CardLimitService cardLimitService;
+
+    @BeforeEach
+    void setUp() {
+        cardLimitService = new CardLimitService(cardLimitRepository, cardRepository, spendRollupRepository, new LocalSpendCounterStore(4),
+                cardNumberBlindIndexUtil, true, 100, 60);
+        lenient().when(cardLimitRepository.findByCardNumberHash(CARD))
+                .thenReturn(Optional.of(new CardLimit(new BigDecimal("1000.00"), new BigDecimal("1500.00"))));
+    }
+
+    @DisplayName("Счётчики заполняются из накопленных расходов один раз, дальше лимит проверяется без БД.")
+    @Test
+    void reserve_SeedsCountersFromRollupsOnce() {
+        when(spendRollupRepository.sumSpentOn(eq(CARD), any())).thenReturn(new BigDecimal("500.00"));
+        when(spendRollupRepository.sumSpentIn(eq(CARD), any())).thenReturn(new BigDecimal("1200.00"));
+
+        cardLimitService.reserve(CARD, new BigDecimal("200.00"));
+        LimitExhaustedException exhausted = assertThrows(LimitExhaustedException.class,
+                () -> cardLimitService.reserve(CARD, new BigDecimal("200.00")));
+
+        assertTrue(exhausted.getMessage().contains("MONTHLY"));
+        assertTrue(exhausted.getMessage().contains("100.0000"));
+        verify(spendRollupRepository, times(1)).sumSpentOn(eq(CARD), any());
+        verify(spendRollupRepository, times(1)).sumSpentIn(eq(CARD), any());
+        verify(cardLimitRepository, times(1)).findByCardNumberHash(CARD);
+    }
+
+    @DisplayName("Дневной лимит: отклонённый расход не учитывается, возвращённый резерв освобождает лимит.")
+    @Test
+    void reserve_DailyLimit_ReleaseRestoresAllowance() {
+        when(spendRollupRepository.sumSpentOn(eq(CARD), any())).thenReturn(BigDecimal.ZERO);
+        when(spendRollupRepository.sumSpentIn(eq(CARD), any())).thenReturn(BigDecimal.ZERO);
+
+        CardLimitService.Reservation reservation = cardLimitService.reserve(CARD, new BigDecimal("600.00"));
+        LimitExhaustedException exhausted = assertThrows(LimitExhaustedException.class,
+                () -> cardLimitService.reserve(CARD, new BigDecimal("500.00")));
+        cardLimitService.release(reservation);
+
+        assertTrue(exhausted.getMessage().contains("DAILY"));
+        assertDoesNotThrow(() -> cardLimitService.reserve(CARD, new BigDecimal("1000.00")));
+    }
+
+    @DisplayName("Карта без лимитов не резервирует расходы.")
+    @Test
+    void reserve_NoLimits_ReturnsNone() {
+        when(cardLimitRepository.findByCardNumberHash(CARD)).thenReturn(Optional.empty());
+
+        assertEquals(CardLimitService.Reservation.NONE, cardLimitService.reserve(CARD, new BigDecimal("10.00")));
+        assertEquals(CardLimitService.Reservation.NONE, cardLimitService.reserve(CARD, new BigDecimal("10.00")));
+
+        verify(cardLimitRepository, times(1)).findByCardNumberHash(CARD);
+        verify(spendRollupRepository, never()).sumSpentOn(any(), any());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.card.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardNumberEncryptorUtil;
+import com.example.bankcards.util.DecryptedCardNumberCache;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Групповой коммит на встроенном PostgreSQL с настоящим Hibernate: проверяет, что откат точки сохранения
+ * отклонённой операции не стирает изменения успешной операции того же пакета.
+ */
+public class CardOperationGroupCommitterDatabaseTest {
+
+    private static final String FIRST_CARD = "hash-first";
+    private static final String SECOND_CARD = "hash-second";
+
+    private static EmbeddedPostgres postgres;
+    private static LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private static JdbcTemplate jdbcTemplate;
+    private static CardRepository cardRepository;
+    private static CardOperationGroupCommitter groupCommitter;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        try (Connection connection = dataSource.getConnection()) {
+            Liquibase liquibase = new Liquibase("db/group-commit-changelog.xml",
+                    new ClassLoaderResourceAccessor(), new JdbcConnection(connection));
+            liquibase.setChangeLogParameter("cardEncryptionKey", "ENCRYPTION_SECRET");
+            liquibase.setChangeLogParameter("cardEncryptionSalt", "1961000000abcdef");
+            liquibase.setChangeLogParameter("cardBlindIndexKey", "BLIND_INDEX_SECRET");
+            liquibase.update(new Contexts(), new LabelExpression());
+        }
+
+        CardNumberEncryptorUtil encryptorUtil = new CardNumberEncryptorUtil("ENCRYPTION_SECRET", "1961000000abcdef");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("""
+                INSERT INTO customer (id, name, email, password, is_account_non_expired, is_account_non_locked,
+                                      is_credentials_non_expired, is_enabled)
+                VALUES (1, 'Customer', 'customer@mail.ru', 'password', true, true, true, true)
+                """);
+        insertCard(1, encryptorUtil.encryptCardNumber("4000000000000001"), FIRST_CARD);
+        insertCard(2, encryptorUtil.encryptCardNumber("4000000000000002"), SECOND_CARD);
+
+        // Конвертер номера карты - Spring-бин с зависимостями, поэтому Hibernate создаёт его через фабрику бинов
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("cardNumberEncryptorUtil", encryptorUtil);
+        beanFactory.registerSingleton("decryptedCardNumberCache", new DecryptedCardNumberCache(false, 0, 0));
+
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(dataSource);
+        entityManagerFactoryBean.setPackagesToScan("com.example.bankcards.entity");
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // Как в приложении: Spring Boot по умолчанию переводит имена полей в snake_case
+        entityManagerFactoryBean.setJpaPropertyMap(Map.of(
+                AvailableSettings.BEAN_CONTAINER, new SpringBeanContainer(beanFactory),
+                AvailableSettings.PHYSICAL_NAMING_STRATEGY, new CamelCaseToUnderscoresNamingStrategy()));
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        cardRepository = new JpaRepositoryFactory(entityManager).getRepository(CardRepository.class);
+        // Пакет из двух операций собирается, как только в очереди обе, поэтому порядок в пакете - порядок отправки
+        groupCommitter = new CardOperationGroupCommitter(cardRepository,
+                new JpaTransactionManager(entityManagerFactory), entityManager,
+                true, 2, 5_000_000, 10_000, "3s");
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (groupCommitter != null) {
+            groupCommitter.shutdown();
+        }
+        if (entityManagerFactoryBean != null) {
+            entityManagerFactoryBean.destroy();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @DisplayName("Отклонённая вторая операция пакета не откатывает списание первой.")
+    @Test
+    void submit_SecondOperationRejected_FirstOperationPersisted() throws Exception {
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                groupCommitter.submit(List.of(FIRST_CARD), lockMode -> {
+                    Card card = cardRepository.findByCardNumberHashWithLock(FIRST_CARD).orElseThrow();
+                    card.setBalance(card.getBalance().subtract(new BigDecimal("10.00")));
+                    return "debited";
+                }));
+        Thread.sleep(200);
+        CompletableFuture<String> rejected = CompletableFuture.supplyAsync(() ->
+                groupCommitter.submit(List.of(SECOND_CARD), lockMode -> {
+                    // Запрос к card вызывает автоматический сброс контекста внутри точки сохранения этой операции
+                    cardRepository.findByCardNumberHashWithLock(SECOND_CARD).orElseThrow();
+                    throw new InsufficientFundsException();
+                }));
+
+        assertEquals("debited", first.join());
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(InsufficientFundsException.class, exception.getCause());
+        assertEquals(0, new BigDecimal("90.00").compareTo(balance(FIRST_CARD)));
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(SECOND_CARD)));
+    }
+
+    private static void insertCard(long id, String encryptedCardNumber, String cardNumberHash) {
+        jdbcTemplate.update("""
+                INSERT INTO card (id, card_number, card_number_hash, owner_id, expiry_date, card_status,
+                                  card_balance, currency, version)
+                VALUES (?, ?, ?, 1, DATE '2030-01-01', 'ACTIVE', 100.00, 'RUB', 0)
+                """, id, encryptedCardNumber, cardNumberHash);
+    }
+
+    private static BigDecimal balance(String cardNumberHash) {
+        return jdbcTemplate.queryForObject("SELECT card_balance FROM card WHERE card_number_hash = ?",
+                BigDecimal.class, cardNumberHash);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.card.CardLockTimeoutException;
+import com.example.bankcards.exception.card.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardBalanceOperationExecutor.LockMode;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CardOperationGroupCommitterTest {
+
+    @Mock
+    private CardRepository cardRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private Session session;
+
+    private CardOperationGroupCommitter groupCommitter;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        lenient().when(entityManager.unwrap(Session.class)).thenReturn(session);
+        groupCommitter = new CardOperationGroupCommitter(cardRepository, transactionManager, entityManager,
+                true, 256, 50_000, 5_000, "3s");
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommitter.shutdown();
+    }
+
+    @DisplayName("Отклонённая операция не валит пакет: остальные операции получают свои результаты.")
+    @Test
+    void submit_RejectedOperation_DoesNotFailOtherOperations() {
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                groupCommitter.submit(List.of("hash-1"), lockMode -> "first"));
+        CompletableFuture<String> rejected = CompletableFuture.supplyAsync(() ->
+                groupCommitter.submit(List.of("hash-2"), lockMode -> {
+                    throw new InsufficientFundsException();
+                }));
+        CompletableFuture<String> pessimistic = CompletableFuture.supplyAsync(() ->
+                groupCommitter.submit(List.of("hash-3"), LockMode::name));
+
+        assertEquals("first", first.join());
+        assertEquals("PESSIMISTIC", pessimistic.join());
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(InsufficientFundsException.class, exception.getCause());
+        verify(cardRepository, atLeastOnce()).setLockTimeout(anyString());
+    }
+
+    @DisplayName("Непредвиденная ошибка откатывает весь пакет.")
+    @Test
+    void submit_UnexpectedFailure_FailsWholeBatch() {
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () ->
+                groupCommitter.submit(List.of("hash-1"), lockMode -> {
+                    throw failure;
+                }));
+
+        assertEquals(failure, exception);
+        verify(transactionManager, atLeastOnce()).rollback(any());
+    }
+
+    @DisplayName("Error в операции завершает только её пакет: следующие операции выполняются.")
+    @Test
+    void submit_ErrorInOperation_WorkerKeepsRunning() {
+        assertThrows(AssertionError.class, () ->
+                groupCommitter.submit(List.of("hash-1"), lockMode -> {
+                    throw new AssertionError("boom");
+                }));
+
+        assertEquals("next", groupCommitter.submit(List.of("hash-1"), lockMode -> "next"));
+    }
+
+    @DisplayName("После остановки операции не принимаются.")
+    @Test
+    void submit_Stopped_Throws() {
+        groupCommitter.shutdown();
+
+        assertThrows(IllegalStateException.class, () -> groupCommitter.submit(List.of("hash-1"), lockMode -> "late"));
+    }
+
+    @DisplayName("Операция, не взятая в пакет за submit-timeout, снимается с очереди с CardLockTimeoutException.")
+    @Test
+    void submit_NotTakenInTime_ThrowsLockTimeoutAndNeverRuns() throws Exception {
+        CardOperationGroupCommitter slowCommitter = new CardOperationGroupCommitter(cardRepository, transactionManager,
+                entityManager, true, 1, 0, 100, "3s");
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean lateOperationRan = new AtomicBoolean();
+        try {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                    slowCommitter.submit(List.of("hash-1"), lockMode -> {
+                        blocking.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "first";
+                    }));
+            blocking.await();
+
+            assertThrows(CardLockTimeoutException.class, () ->
+                    slowCommitter.submit(List.of("hash-2"), lockMode -> {
+                        lateOperationRan.set(true);
+                        return "late";
+                    }));
+
+            release.countDown();
+            assertEquals("first", first.join());
+            assertEquals("next", slowCommitter.submit(List.of("hash-2"), lockMode -> "next"));
+            assertFalse(lateOperationRan.get());
+        } finally {
+            release.countDown();
+            slowCommitter.shutdown();
+        }
+    }
+}
@@ -6,8 +6,15 @@ import com.example.bankcards.entity.*;
 import com.example.bankcards.entity.enums.*;
 import com.example.bankcards.entity.mapper.*;
 import com.example.bankcards.entity.operations.*;
+import com.example.bankcards.exception.InvalidPageCursorException;
+import com.example.bankcards.exception.InvalidPageSizeException;
+import com.example.bankcards.exception.InvalidTransactionFilterException;
 import com.example.bankcards.exception.card.*;
+import com.example.bankcards.exception.customer.NoAccessToOtherDataException;
 import com.example.bankcards.repository.*;
+import com.example.bankcards.repository.projection.CardView;
+import com.example.bankcards.service.CardBalanceOperationExecutor.LockMode;
+import com.example.bankcards.util.CardNumberBlindIndexUtil;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -16,15 +23,21 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,11 +50,27 @@ public class CustomerCardFunctionServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
     @Mock
+    private TransactionQueryRepository transactionQueryRepository;
+    @Mock
     private CardMapper cardMapper;
     @Mock
     private TransactionMapper transactionMapper;
     @Mock
-    private IdempotencyService idempotencyService;
+    private CardNumberBlindIndexUtil cardNumberBlindIndexUtil;
+    @Mock
+    private CardBalanceOperationExecutor cardBalanceOperationExecutor;
+    @Mock
+    private HotCardBalanceService hotCardBalanceService;
+    @Mock
+    private LedgerService ledgerService;
+    @Mock
+    private BulkTransferService bulkTransferService;
+    @Mock
+    private CardLimitService cardLimitService;
+    @Mock
+    private SpendRollupService spendRollupService;
+    @Mock
+    private TransactionOutboxService transactionOutboxService;
     @Mock
     private SecurityContext securityContext;
     @Mock
@@ -67,6 +96,7 @@ public class CustomerCardFunctionServiceTest {
         card.setId(1L);
         card.setCustomer(customer);
         card.setCardNumber("1234567890123456");
+        card.setCardNumberHash(hash("1234567890123456"));
         card.setStatus(CardStatus.ACTIVE);
         card.setBalance(new BigDecimal("1000.00"));
 
@@ -81,6 +111,29 @@ public class CustomerCardFunctionServiceTest {
         cardResponse = new CardResponse();
         transactionResponse = new TransactionResponse();
 
+        lenient().when(cardNumberBlindIndexUtil.hashCardNumber(anyString()))
+                .thenAnswer(invocation -> hash(invocation.getArgument(0)));
+        lenient().when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(card.getCardNumber()), customerEmail))
+                .thenReturn(Optional.of(card.getId()));
+        runBalanceOperationsWith(LockMode.PESSIMISTIC);
+    }
+
+    private void runBalanceOperationsWith(LockMode lockMode) {
+        lenient().doAnswer(invocation -> invocation.<Function<LockMode, ?>>getArgument(1).apply(lockMode))
+                .when(cardBalanceOperationExecutor).execute(anyCollection(), any());
+    }
+
+    private String hash(String cardNumber) {
+        return "hash-" + cardNumber;
+    }
+
+    private CardView cardView() {
+        return new CardView(card.getCardNumber(), customer.getName(), card.getExpiryDate(), card.getStatus(),
+                card.getBalance(), card.getCurrency());
+    }
+
+    private ShowTransactionalByCardRequest transactionsRequest(String cardNumber) {
+        return new ShowTransactionalByCardRequest(cardNumber, null, null, null, null, null, null, null);
     }
 
     @DisplayName("Вывести список карт пользователя.")
@@ -88,52 +141,70 @@ public class CustomerCardFunctionServiceTest {
     void getCustomerCards_Success() {
         Long customerId = 1L;
         Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "createdAt"));
-        Page<Card> cardPage = new PageImpl<>(List.of(card));
+        CardView cardView = cardView();
+        Page<CardView> cardPage = new PageImpl<>(List.of(cardView));
 
         when(customerService.findCustomerByEmail(customerEmail)).thenReturn(Optional.of(customer));
-        when(cardRepository.findByCustomerId(customerId, pageable)).thenReturn(cardPage);
-        when(cardMapper.toCardResponse(card)).thenReturn(cardResponse);
+        when(cardRepository.findViewsByCustomerId(customerId, pageable)).thenReturn(cardPage);
+        when(cardMapper.toCardResponse(cardView)).thenReturn(cardResponse);
 
         Page<CardResponse> result = service.getCustomerCards(customerEmail, null, 0, 10);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         assertEquals(cardResponse, result.getContent().get(0));
-        verify(cardRepository).findByCustomerId(customerId, pageable);
+        verify(cardRepository).findViewsByCustomerId(customerId, pageable);
     }
 
     @DisplayName("Вывести данные карты пользователя.")
     @Test
     void getCustomerCard_Success() {
         String cardNumber = "1234567890123456";
-        when(cardRepository.findByCardNumber(cardNumber)).thenReturn(Optional.of(card));
-        when(cardMapper.toCardResponse(card)).thenReturn(cardResponse);
+        CardView cardView = cardView();
+        when(cardRepository.findViewByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(cardView));
+        when(cardMapper.toCardResponse(cardView)).thenReturn(cardResponse);
 
         CardResponse result = service.getCustomerCard(cardNumber, customerEmail);
 
         assertEquals(cardResponse, result);
-        verify(cardRepository).findByCardNumber(cardNumber);
+        verify(cardRepository, never()).findByCardNumberHash(anyString());
     }
 
     @DisplayName("Карта не найдена.")
     @Test
     void getCustomerCard_CardNotFound_ThrowsException() {
         String cardNumber = "1234567890123456";
-        when(cardRepository.findByCardNumber(cardNumber)).thenReturn(Optional.empty());
+        when(cardRepository.findViewByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.empty());
+        when(cardRepository.existsByCardNumberHash(hash(cardNumber))).thenReturn(false);
 
         assertThrows(CardWithNumberNoExistsException.class, () ->
             service.getCustomerCard(cardNumber, customerEmail));
     }
 
+    @DisplayName("Данные чужой карты не выдаются.")
+    @Test
+    void getCustomerCard_OtherCustomerCard_ThrowsException() {
+        String cardNumber = "1234567890123456";
+        when(cardRepository.findViewByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.empty());
+        when(cardRepository.existsByCardNumberHash(hash(cardNumber))).thenReturn(true);
+
+        assertThrows(NoAccessToOtherDataException.class, () ->
+            service.getCustomerCard(cardNumber, customerEmail));
+    }
+
     @DisplayName("Операци блокировки карты")
     @Test
     void requestCardBlock_Success() {
         String cardNumber = "1234567890123456";
         BlockCardRequest request = new BlockCardRequest(cardNumber);
         
-        when(cardRepository.findByCardNumber(cardNumber)).thenReturn(Optional.of(card));
+        when(cardRepository.findByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
         
-        String result = service.requestCardBlock(request, "idemKey", customerEmail);
+        String result = service.requestCardBlock(request, customerEmail);
 
         assertEquals("Card has been blocked", result);
         assertEquals(CardStatus.BLOCKED, card.getStatus());
@@ -147,27 +218,113 @@ public class CustomerCardFunctionServiceTest {
         card.setStatus(CardStatus.BLOCKED);
         BlockCardRequest request = new BlockCardRequest(cardNumber);
         
-        when(cardRepository.findByCardNumber(cardNumber)).thenReturn(Optional.of(card));
+        when(cardRepository.findByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
 
         assertThrows(RuntimeException.class, () -> 
-            service.requestCardBlock(request, "idemKey", customerEmail));
+            service.requestCardBlock(request, customerEmail));
     }
 
     @DisplayName("Вывести список транзакций по карте.")
     @Test
     void getTransactionalByCard_Success() {
         String cardNumber = "1234567890123456";
-        ShowTransactionalByCardRequest request = new ShowTransactionalByCardRequest(cardNumber);
-        Pageable pageable = PageRequest.of(0, 10, Sort.by("createdAt"));
-        
-        when(cardRepository.findByCardNumber(cardNumber)).thenReturn(Optional.of(card));
-        when(transactionRepository.findBySourceCard(card, pageable)).thenReturn(List.of(transaction));
+        ShowTransactionalByCardRequest request = transactionsRequest(cardNumber);
+
+        when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card.getId()));
+        when(transactionQueryRepository.findPage(card.getId(), TransactionFilter.NONE, null, 11)).thenReturn(List.of(transaction));
+        when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
+
+        TransactionPageResponse result = service.getTransactionalByCard(request, null, 10, customerEmail);
+
+        assertEquals(1, result.items().size());
+        assertEquals(transactionResponse, result.items().get(0));
+        assertNull(result.nextCursor());
+    }
+
+    @DisplayName("Следующая страница транзакций читается с места, указанного курсором.")
+    @Test
+    void getTransactionalByCard_WithCursor_ContinuesAfterLastTransaction() {
+        String cardNumber = "1234567890123456";
+        ShowTransactionalByCardRequest request = transactionsRequest(cardNumber);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123456000);
+        Transaction first = new Transaction();
+        first.setId(7L);
+        first.setCreatedAt(createdAt);
+        Transaction second = new Transaction();
+        second.setId(8L);
+        second.setCreatedAt(createdAt);
+
+        when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card.getId()));
+        when(transactionQueryRepository.findPage(card.getId(), TransactionFilter.NONE, null, 2)).thenReturn(List.of(first, second));
+        when(transactionQueryRepository.findPage(card.getId(), TransactionFilter.NONE, new TransactionCursor(createdAt, 7L), 2))
+                .thenReturn(List.of(second));
+        when(transactionMapper.toTransactionResponse(any())).thenReturn(transactionResponse);
+
+        TransactionPageResponse firstPage = service.getTransactionalByCard(request, null, 1, customerEmail);
+        TransactionPageResponse secondPage =
+                service.getTransactionalByCard(request, firstPage.nextCursor(), 1, customerEmail);
+
+        assertEquals(1, firstPage.items().size());
+        assertNotNull(firstPage.nextCursor());
+        assertEquals(1, secondPage.items().size());
+        assertNull(secondPage.nextCursor());
+    }
+
+    @DisplayName("Фильтры запроса передаются в выборку истории операций.")
+    @Test
+    void getTransactionalByCard_WithFilter_PassesFilterToQuery() {
+        String cardNumber = "1234567890123456";
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 0, 0);
+        ShowTransactionalByCardRequest request = new ShowTransactionalByCardRequest(cardNumber, from, null,
+                TransactionType.TRANSFER, null, TransactionDirection.IN, new BigDecimal("10.00"), null);
+        TransactionFilter filter = new TransactionFilter(from, null, TransactionType.TRANSFER, null,
+                TransactionDirection.IN, new BigDecimal("10.00"), null);
+
+        when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card.getId()));
+        when(transactionQueryRepository.findPage(card.getId(), filter, null, 11)).thenReturn(List.of(transaction));
         when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
 
-        List<TransactionResponse> result = service.getTransactionalByCard(request, 0, 10, "idemKey", customerEmail);
+        TransactionPageResponse result = service.getTransactionalByCard(request, null, 10, customerEmail);
+
+        assertEquals(List.of(transactionResponse), result.items());
+    }
+
+    @DisplayName("Фильтр с пустым периодом отклоняется.")
+    @Test
+    void getTransactionalByCard_FromNotBeforeTo_Throws() {
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 0, 0);
+
+        assertThrows(InvalidTransactionFilterException.class, () -> new ShowTransactionalByCardRequest(
+                "1234567890123456", from, from, null, null, null, null, null).filter());
+    }
+
+    @DisplayName("Некорректный курсор страницы отклоняется.")
+    @Test
+    void getTransactionalByCard_InvalidCursor_Throws() {
+        String cardNumber = "1234567890123456";
+        ShowTransactionalByCardRequest request = transactionsRequest(cardNumber);
 
-        assertEquals(1, result.size());
-        assertEquals(transactionResponse, result.get(0));
+        when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card.getId()));
+
+        assertThrows(InvalidPageCursorException.class,
+                () -> service.getTransactionalByCard(request, "not-a-cursor", 10, customerEmail));
+    }
+
+    @DisplayName("Размер страницы вне [1, 100] отклоняется до запроса к БД.")
+    @Test
+    void getTransactionalByCard_InvalidSize_Throws() {
+        ShowTransactionalByCardRequest request = transactionsRequest("1234567890123456");
+
+        assertThrows(InvalidPageSizeException.class,
+                () -> service.getTransactionalByCard(request, null, 0, customerEmail));
+        assertThrows(InvalidPageSizeException.class,
+                () -> service.getTransactionalByCard(request, null, -5, customerEmail));
+        verifyNoInteractions(transactionQueryRepository);
     }
 
     @DisplayName("Операция перевода средств между своими картами.")
@@ -179,24 +336,83 @@ public class CustomerCardFunctionServiceTest {
         cardTo.setId(2L);
         cardTo.setCustomer(customer);
         cardTo.setCardNumber(toCardNumber);
+        cardTo.setCardNumberHash(hash(toCardNumber));
         cardTo.setStatus(CardStatus.ACTIVE);
         cardTo.setBalance(new BigDecimal("500.00"));
         
         TransferFundsBetweenUserCardsRequest request = new TransferFundsBetweenUserCardsRequest(
             fromCardNumber, toCardNumber, new BigDecimal("100.00"), "RUB");
 
-        when(cardRepository.findByCardNumberWithLock(fromCardNumber)).thenReturn(Optional.of(card));
-        when(cardRepository.findByCardNumberWithLock(toCardNumber)).thenReturn(Optional.of(cardTo));
+        when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(fromCardNumber), customerEmail))
+                .thenReturn(Optional.of(card.getId()));
+        when(cardRepository.findAllByCardNumberHashInWithLock(List.of(hash(fromCardNumber), hash(toCardNumber))))
+                .thenReturn(List.of(card, cardTo));
         when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
         when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
 
-        TransactionResponse result = service.transferBetweenCards(request, "idemKey", customerEmail);
+        TransactionResponse result = service.transferBetweenCards(request, customerEmail);
 
         assertEquals(transactionResponse, result);
         assertEquals(new BigDecimal("900.00"), card.getBalance());
         assertEquals(new BigDecimal("600.00"), cardTo.getBalance());
         verify(cardRepository, times(2)).save(any(Card.class));
         verify(transactionRepository).save(any(Transaction.class));
+        verify(ledgerService).recordTransfer(transaction);
+        verify(spendRollupService).record(transaction);
+        verify(transactionOutboxService).record(transaction);
+    }
+
+    @DisplayName("Встречный перевод: карты блокируются одним запросом в порядке id.")
+    @Test
+    void transferBetweenCards_ReverseDirection_LocksCardsInIdOrder() {
+        String fromCardNumber = "9876543210987654";
+        String toCardNumber = "1234567890123456";
+        Card cardFrom = new Card();
+        cardFrom.setId(2L);
+        cardFrom.setCustomer(customer);
+        cardFrom.setCardNumber(fromCardNumber);
+        cardFrom.setCardNumberHash(hash(fromCardNumber));
+        cardFrom.setStatus(CardStatus.ACTIVE);
+        cardFrom.setBalance(new BigDecimal("500.00"));
+
+        TransferFundsBetweenUserCardsRequest request = new TransferFundsBetweenUserCardsRequest(
+            fromCardNumber, toCardNumber, new BigDecimal("100.00"), "RUB");
+
+        when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(fromCardNumber), customerEmail))
+                .thenReturn(Optional.of(cardFrom.getId()));
+        when(cardRepository.findAllByCardNumberHashInWithLock(List.of(hash(fromCardNumber), hash(toCardNumber))))
+                .thenReturn(List.of(card, cardFrom));
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+        when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
+
+        service.transferBetweenCards(request, customerEmail);
+
+        assertEquals(new BigDecimal("400.00"), cardFrom.getBalance());
+        assertEquals(new BigDecimal("1100.00"), card.getBalance());
+        verify(cardRepository, never()).findByCardNumberHashAndCustomerEmailWithLock(anyString(), anyString());
+    }
+
+    @DisplayName("Пакет переводов: сбой одной части помечает её переводы FAILED, остальные части выполняются.")
+    @Test
+    void bulkTransfer_FailedChunk_MarksItsItemsFailed() {
+        ReflectionTestUtils.setField(service, "bulkTransferChunkSize", 2);
+        TransferFundsBetweenUserCardsRequest transfer = new TransferFundsBetweenUserCardsRequest(
+                "1234567890123456", "9876543210987654", new BigDecimal("10.00"), "RUB");
+        BulkTransferRequest request = new BulkTransferRequest(List.of(transfer, transfer, transfer));
+
+        when(bulkTransferService.transferChunk(List.of(transfer, transfer), 0, customerEmail))
+                .thenThrow(new CardLockTimeoutException());
+        when(bulkTransferService.transferChunk(List.of(transfer), 2, customerEmail))
+                .thenReturn(List.of(new BulkTransferItemResponse(2, BulkTransferItemResponse.Status.SUCCESS, 7L, null)));
+
+        BulkTransferResponse result = service.bulkTransfer(request, customerEmail);
+
+        assertEquals(3, result.items().size());
+        assertEquals(BulkTransferItemResponse.Status.FAILED, result.items().get(0).status());
+        assertEquals(BulkTransferItemResponse.Status.FAILED, result.items().get(1).status());
+        assertEquals(1, result.items().get(1).index());
+        assertEquals(BulkTransferItemResponse.Status.SUCCESS, result.items().get(2).status());
+        assertEquals(7L, result.items().get(2).transactionId());
     }
 
     @DisplayName("Вывод средств с карты.")
@@ -205,16 +421,139 @@ public class CustomerCardFunctionServiceTest {
         String cardNumber = "1234567890123456";
         WithdrawFundsRequest request = new WithdrawFundsRequest(cardNumber, new BigDecimal("100.00"), "RUB");
 
-        when(cardRepository.findByCardNumberWithLock(cardNumber)).thenReturn(Optional.of(card));
+        when(cardRepository.findByCardNumberHashAndCustomerEmailWithLock(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
         when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
         when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
 
-        TransactionResponse result = service.withdrawalFromCard(request, "idemKey", customerEmail);
+        TransactionResponse result = service.withdrawalFromCard(request, customerEmail);
 
         assertEquals(transactionResponse, result);
         assertEquals(new BigDecimal("900.00"), card.getBalance());
         verify(cardRepository).save(card);
         verify(transactionRepository).save(any(Transaction.class));
+        verify(ledgerService).recordDebit(transaction);
+        verify(spendRollupService).record(transaction);
+        verify(transactionOutboxService).record(transaction);
+    }
+
+    @DisplayName("Вывод средств с чужой карты отклоняется: карта ищется с фильтром по владельцу.")
+    @Test
+    void withdrawalFromCard_OtherCustomerCard_ThrowsNoAccess() {
+        String cardNumber = "1234567890123456";
+        WithdrawFundsRequest request = new WithdrawFundsRequest(cardNumber, new BigDecimal("100.00"), "RUB");
+
+        when(cardRepository.findByCardNumberHashAndCustomerEmailWithLock(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.empty());
+        when(cardRepository.existsByCardNumberHash(hash(cardNumber))).thenReturn(true);
+
+        assertThrows(NoAccessToOtherDataException.class, () -> service.withdrawalFromCard(request, customerEmail));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @DisplayName("Вывод средств сверх лимита отклоняется до блокировки карты и обращения к БД.")
+    @Test
+    void withdrawalFromCard_LimitExhausted_RejectedBeforeCardLock() {
+        String cardNumber = "1234567890123456";
+        WithdrawFundsRequest request = new WithdrawFundsRequest(cardNumber, new BigDecimal("100.00"), "RUB");
+
+        when(cardLimitService.reserve(hash(cardNumber), new BigDecimal("100.00"))).thenThrow(
+                new LimitExhaustedException(new BigDecimal("500.00"), LimitType.DAILY, new BigDecimal("50.00")));
+
+        assertThrows(LimitExhaustedException.class, () -> service.withdrawalFromCard(request, customerEmail));
+
+        verify(cardBalanceOperationExecutor, never()).execute(anyCollection(), any());
+        verify(cardRepository, never()).findByCardNumberHashAndCustomerEmailWithLock(anyString(), anyString());
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @DisplayName("Вывод средств с чужой карты отклоняется до резерва лимита: лимиты чужой карты не раскрываются.")
+    @Test
+    void withdrawalFromCard_OtherCustomerCard_RejectedBeforeLimitReservation() {
+        String cardNumber = "5555666677778888";
+        WithdrawFundsRequest request = new WithdrawFundsRequest(cardNumber, new BigDecimal("100.00"), "RUB");
+
+        when(cardRepository.existsByCardNumberHash(hash(cardNumber))).thenReturn(true);
+
+        assertThrows(NoAccessToOtherDataException.class, () -> service.withdrawalFromCard(request, customerEmail));
+
+        verifyNoInteractions(cardLimitService);
+        verify(cardBalanceOperationExecutor, never()).execute(anyCollection(), any());
+    }
+
+    @DisplayName("Перевод с чужой карты отклоняется до резерва лимита.")
+    @Test
+    void transferBetweenCards_OtherCustomerCard_RejectedBeforeLimitReservation() {
+        String fromCardNumber = "5555666677778888";
+        TransferFundsBetweenUserCardsRequest request = new TransferFundsBetweenUserCardsRequest(
+                fromCardNumber, "1234567890123456", new BigDecimal("100.00"), "RUB");
+
+        when(cardRepository.existsByCardNumberHash(hash(fromCardNumber))).thenReturn(true);
+
+        assertThrows(NoAccessToOtherDataException.class, () -> service.transferBetweenCards(request, customerEmail));
+
+        verifyNoInteractions(cardLimitService);
+    }
+
+    @DisplayName("Невыполненный вывод средств возвращает резерв лимита.")
+    @Test
+    void withdrawalFromCard_InsufficientFunds_ReleasesLimitReservation() {
+        String cardNumber = "1234567890123456";
+        WithdrawFundsRequest request = new WithdrawFundsRequest(cardNumber, new BigDecimal("5000.00"), "RUB");
+        CardLimitService.Reservation reservation = new CardLimitService.Reservation(hash(cardNumber),
+                null, 50_000_000L);
+
+        when(cardLimitService.reserve(hash(cardNumber), new BigDecimal("5000.00"))).thenReturn(reservation);
+        when(cardRepository.findByCardNumberHashAndCustomerEmailWithLock(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
+
+        assertThrows(InsufficientFundsException.class, () -> service.withdrawalFromCard(request, customerEmail));
+
+        verify(cardLimitService).release(reservation);
+    }
+
+    @DisplayName("Вывод средств с карты в оптимистичном режиме: карта читается без блокировки.")
+    @Test
+    void withdrawalFromCard_OptimisticMode_ReadsCardWithoutLock() {
+        String cardNumber = "1234567890123456";
+        WithdrawFundsRequest request = new WithdrawFundsRequest(cardNumber, new BigDecimal("100.00"), "RUB");
+        runBalanceOperationsWith(LockMode.OPTIMISTIC);
+
+        when(cardRepository.findByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+        when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
+
+        TransactionResponse result = service.withdrawalFromCard(request, customerEmail);
+
+        assertEquals(transactionResponse, result);
+        assertEquals(new BigDecimal("900.00"), card.getBalance());
+        verify(cardRepository, never()).findByCardNumberHashAndCustomerEmailWithLock(anyString(), anyString());
+        verify(cardRepository, never()).setLockTimeout(anyString());
+    }
+
+    @DisplayName("Пополнение горячей карты: зачисление в слот без блокировки строки карты.")
+    @Test
+    void cardReplenishment_HotCard_CreditsSlotWithoutLock() {
+        String cardNumber = "1234567890123456";
+        BigDecimal amount = new BigDecimal("100.00");
+        ReplenishmentCardRequest request = new ReplenishmentCardRequest(cardNumber, amount);
+        card.setBalanceSlots(4);
+
+        when(hotCardBalanceService.isEnabled()).thenReturn(true);
+        when(hotCardBalanceService.isHot(card)).thenReturn(true);
+        when(cardRepository.findBalanceSlotsByCardNumberHash(hash(cardNumber))).thenReturn(Optional.of(4));
+        when(cardRepository.findByCardNumberHashAndCustomerEmail(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+        when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
+
+        TransactionResponse result = service.cardReplenishment(request, customerEmail);
+
+        assertEquals(transactionResponse, result);
+        assertEquals(new BigDecimal("1000.00"), card.getBalance());
+        verify(hotCardBalanceService).credit(card, amount);
+        verify(cardRepository, never()).findByCardNumberHashAndCustomerEmailWithLock(anyString(), anyString());
     }
 
     @DisplayName("Операция пополнения карты.")
@@ -223,16 +562,33 @@ public class CustomerCardFunctionServiceTest {
         String cardNumber = "1234567890123456";
         ReplenishmentCardRequest request = new ReplenishmentCardRequest(cardNumber, new BigDecimal("100.00"));
 
-        when(cardRepository.findByCardNumberWithLock(cardNumber)).thenReturn(Optional.of(card));
+        when(cardRepository.findByCardNumberHashAndCustomerEmailWithLock(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
         when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
         when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
 
-        TransactionResponse result = service.cardReplenishment(request, "idemKey", customerEmail);
+        TransactionResponse result = service.cardReplenishment(request, customerEmail);
 
         assertEquals(transactionResponse, result);
         assertEquals(new BigDecimal("1100.00"), card.getBalance());
         verify(cardRepository).save(card);
         verify(transactionRepository).save(any(Transaction.class));
+        verify(ledgerService).recordCredit(transaction);
+    }
+
+    @DisplayName("Пополнение закрытой карты отклоняется, транзакция не создаётся.")
+    @Test
+    void cardReplenishment_ClosedCard_ThrowsException() {
+        String cardNumber = "1234567890123456";
+        ReplenishmentCardRequest request = new ReplenishmentCardRequest(cardNumber, new BigDecimal("100.00"));
+        card.setStatus(CardStatus.CLOSED);
+
+        when(cardRepository.findByCardNumberHashAndCustomerEmailWithLock(hash(cardNumber), customerEmail))
+                .thenReturn(Optional.of(card));
+
+        assertThrows(CardClosedException.class, () -> service.cardReplenishment(request, customerEmail));
+        assertEquals(new BigDecimal("1000.00"), card.getBalance());
+        verify(transactionRepository, never()).save(any(Transaction.class));
     }
 
     @DisplayName("Недостаточно рседств для перервода.")
@@ -244,16 +600,19 @@ public class CustomerCardFunctionServiceTest {
         cardTo.setId(2L);
         cardTo.setCustomer(customer);
         cardTo.setCardNumber(toCardNumber);
+        cardTo.setCardNumberHash(hash(toCardNumber));
         cardTo.setStatus(CardStatus.ACTIVE);
         cardTo.setBalance(new BigDecimal("500.00"));
 
         TransferFundsBetweenUserCardsRequest request = new TransferFundsBetweenUserCardsRequest(
             fromCardNumber, toCardNumber, new BigDecimal("2000.00"), "RUB");
 
-        when(cardRepository.findByCardNumberWithLock(fromCardNumber)).thenReturn(Optional.of(card));
-        when(cardRepository.findByCardNumberWithLock(toCardNumber)).thenReturn(Optional.of(cardTo));
+        when(cardRepository.findIdByCardNumberHashAndCustomerEmail(hash(fromCardNumber), customerEmail))
+                .thenReturn(Optional.of(card.getId()));
+        when(cardRepository.findAllByCardNumberHashInWithLock(List.of(hash(fromCardNumber), hash(toCardNumber))))
+                .thenReturn(List.of(card, cardTo));
 
         assertThrows(InsufficientFundsException.class, () -> 
-            service.transferBetweenCards(request, "idemKey", customerEmail));
+            service.transferBetweenCards(request, customerEmail));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardBalanceSlotRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочный тест зачислений на горячую карту: пропускная способность должна расти с числом слотов.
+ * Каждая транзакция держит блокировку слота ещё 2 мс (pg_sleep), имитируя остальную работу операции.
+ * Нужен PostgreSQL: LOAD_TEST_DB_URL, LOAD_TEST_DB_USERNAME, LOAD_TEST_DB_PASSWORD.
+ * Таблица создаётся в отдельной схеме hot_balance_load_test.
+ */
+@EnabledIfEnvironmentVariable(named = "LOAD_TEST_DB_URL", matches = ".+")
+public class HotCardBalanceLoadTest {
+
+    private static final String SCHEMA = "hot_balance_load_test";
+    private static final long CARD_ID = 1L;
+    private static final int THREADS = 32;
+    private static final long DURATION_MILLIS = 3000;
+
+    private static HikariDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static HotCardBalanceService hotCardBalanceService;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("LOAD_TEST_DB_URL"));
+        dataSource.setUsername(System.getenv("LOAD_TEST_DB_USERNAME"));
+        dataSource.setPassword(System.getenv("LOAD_TEST_DB_PASSWORD"));
+        dataSource.setMaximumPoolSize(THREADS);
+        dataSource.setConnectionInitSql("SET search_path TO " + SCHEMA);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA);
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS card_balance_slot (
+                    card_id BIGINT NOT NULL,
+                    slot INT NOT NULL,
+                    balance DECIMAL(19,4) NOT NULL DEFAULT 0,
+                    PRIMARY KEY (card_id, slot))
+                """);
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        hotCardBalanceService = new HotCardBalanceService(new CardBalanceSlotRepository(jdbcTemplate), true);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    @DisplayName("Пропускная способность зачислений растёт с числом слотов.")
+    @Test
+    void creditThroughput_ScalesWithSlotCount() throws InterruptedException {
+        List<Double> throughputs = new ArrayList<>();
+        for (int slots : new int[]{1, 4, 16}) {
+            throughputs.add(measureCreditThroughput(slots));
+        }
+
+        assertTrue(throughputs.get(1) > throughputs.get(0) * 2,
+                "4 slots should at least double single-slot throughput: " + throughputs);
+        assertTrue(throughputs.get(2) > throughputs.get(1),
+                "16 slots should beat 4 slots: " + throughputs);
+    }
+
+    private double measureCreditThroughput(int slots) throws InterruptedException {
+        Card card = new Card();
+        card.setId(CARD_ID);
+        card.setBalance(BigDecimal.ZERO);
+        transactionTemplate.executeWithoutResult(status -> hotCardBalanceService.resize(card, slots));
+
+        LongAdder credits = new LongAdder();
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long deadline = System.currentTimeMillis() + DURATION_MILLIS;
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        transactionTemplate.executeWithoutResult(status -> {
+                            hotCardBalanceService.credit(card, BigDecimal.ONE);
+                            jdbcTemplate.execute("SELECT pg_sleep(0.002)");
+                        });
+                        credits.increment();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        BigDecimal credited = transactionTemplate.execute(status -> hotCardBalanceService.availableBalance(card))
+                .subtract(card.getBalance());
+        assertEquals(0, credited.compareTo(BigDecimal.valueOf(credits.sum())));
+
+        return credits.sum() * 1000.0 / DURATION_MILLIS;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardBalanceSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class HotCardBalanceServiceTest {
+
+    @Mock
+    private CardBalanceSlotRepository cardBalanceSlotRepository;
+
+    private HotCardBalanceService hotCardBalanceService;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        hotCardBalanceService = new HotCardBalanceService(cardBalanceSlotRepository, true);
+        card = new Card();
+        card.setId(1L);
+        card.setBalance(new BigDecimal("100.00"));
+        card.setBalanceSlots(4);
+    }
+
+    @DisplayName("Зачисление попадает в слот карты, card_balance не меняется.")
+    @Test
+    void credit_SlotExists_CreditsSlot() {
+        BigDecimal amount = new BigDecimal("10.00");
+        when(cardBalanceSlotRepository.credit(eq(1L), anyInt(), eq(amount))).thenReturn(true);
+
+        hotCardBalanceService.credit(card, amount);
+
+        verify(cardBalanceSlotRepository, never()).creditCardBalance(anyLong(), any());
+    }
+
+    @DisplayName("Если слоты пересозданы параллельно и слота нет, сумма зачисляется на card_balance.")
+    @Test
+    void credit_SlotMissing_CreditsCardBalance() {
+        BigDecimal amount = new BigDecimal("10.00");
+        when(cardBalanceSlotRepository.credit(eq(1L), anyInt(), eq(amount))).thenReturn(false);
+
+        hotCardBalanceService.credit(card, amount);
+
+        verify(cardBalanceSlotRepository).creditCardBalance(1L, amount);
+    }
+}
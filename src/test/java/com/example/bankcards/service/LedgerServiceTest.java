@@ -0,0 +1,102 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.LedgerAccount;
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerRepository;
+import com.example.bankcards.repository.LedgerRepository.LedgerLeg;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class LedgerServiceTest {
+
+    @Mock
+    private LedgerRepository ledgerRepository;
+    @Mock
+    private CardRepository cardRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private LedgerService ledgerService;
+
+    private Card source;
+    private Card target;
+    private Transaction transaction;
+
+    @BeforeEach
+    void setUp() {
+        source = new Card();
+        source.setId(1L);
+        target = new Card();
+        target.setId(2L);
+
+        transaction = new Transaction();
+        transaction.setId(10L);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setSourceCard(source);
+        transaction.setTargetCard(target);
+    }
+
+    @DisplayName("Перевод записывается двумя проводками по картам с нулевой суммой.")
+    @Test
+    void recordTransfer_AppendsBalancedCardLegs() {
+        ledgerService.recordTransfer(transaction);
+
+        List<LedgerLeg> legs = captureLegs();
+        assertEquals(List.of(
+                new LedgerLeg(10L, 1L, LedgerAccount.CARD, new BigDecimal("-100.00")),
+                new LedgerLeg(10L, 2L, LedgerAccount.CARD, new BigDecimal("100.00"))), legs);
+        assertEquals(0, sum(legs).signum());
+    }
+
+    @DisplayName("Снятие списывает с карты на внешний счёт.")
+    @Test
+    void recordDebit_AppendsCardAndExternalLegs() {
+        ledgerService.recordDebit(transaction);
+
+        List<LedgerLeg> legs = captureLegs();
+        assertEquals(List.of(
+                new LedgerLeg(10L, 1L, LedgerAccount.CARD, new BigDecimal("-100.00")),
+                new LedgerLeg(10L, null, LedgerAccount.EXTERNAL, new BigDecimal("100.00"))), legs);
+        assertEquals(0, sum(legs).signum());
+    }
+
+    @DisplayName("Пополнение зачисляет на карту с внешнего счёта.")
+    @Test
+    void recordCredit_AppendsCardAndExternalLegs() {
+        ledgerService.recordCredit(transaction);
+
+        List<LedgerLeg> legs = captureLegs();
+        assertEquals(List.of(
+                new LedgerLeg(10L, 1L, LedgerAccount.CARD, new BigDecimal("100.00")),
+                new LedgerLeg(10L, null, LedgerAccount.EXTERNAL, new BigDecimal("-100.00"))), legs);
+        assertEquals(0, sum(legs).signum());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<LedgerLeg> captureLegs() {
+        ArgumentCaptor<List<LedgerLeg>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerRepository).append(captor.capture());
+        return captor.getValue();
+    }
+
+    private BigDecimal sum(List<LedgerLeg> legs) {
+        return legs.stream().map(LedgerLeg::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.CardSpendSummaryResponse;
+import com.example.bankcards.dto.card.CardSpendSummaryResponse.SpendTotalResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.repository.BulkTransferRepository.TransferRow;
+import com.example.bankcards.repository.SpendRollupRepository;
+import com.example.bankcards.repository.SpendRollupRepository.SpendRow;
+import com.example.bankcards.repository.SpendRollupRepository.SpendTotal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SpendRollupServiceTest {
+
+    @Mock
+    private SpendRollupRepository spendRollupRepository;
+
+    @InjectMocks
+    private SpendRollupService spendRollupService;
+
+    @DisplayName("Успешный расход увеличивает накопитель карты-источника.")
+    @Test
+    void record_SuccessfulDebit_AddsRow() {
+        spendRollupService.record(transaction(TransactionType.DEBIT, TransactionStatus.SUCCESS));
+
+        verify(spendRollupRepository).add(List.of(
+                new SpendRow(1L, LocalDate.now(), TransactionType.DEBIT, new BigDecimal("100.00"), 1)));
+    }
+
+    @DisplayName("Зачисления и неуспешные операции в накопители не попадают.")
+    @Test
+    void record_CreditOrFailed_Skipped() {
+        spendRollupService.record(transaction(TransactionType.CREDIT, TransactionStatus.SUCCESS));
+        spendRollupService.record(transaction(TransactionType.TRANSFER, TransactionStatus.FAIL));
+
+        verify(spendRollupRepository, never()).add(any());
+    }
+
+    @DisplayName("Переводы пакета сворачиваются в одну строку на карту-источник в порядке id.")
+    @Test
+    void recordTransfers_GroupsBySourceCard() {
+        spendRollupService.recordTransfers(List.of(
+                new TransferRow(2L, 1L, new BigDecimal("10.00"), "RUB"),
+                new TransferRow(1L, 2L, new BigDecimal("100.00"), "RUB"),
+                new TransferRow(2L, 3L, new BigDecimal("5.50"), "RUB")));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SpendRow>> rows = ArgumentCaptor.forClass(List.class);
+        verify(spendRollupRepository).add(rows.capture());
+        LocalDate today = LocalDate.now();
+        assertEquals(List.of(
+                new SpendRow(1L, today, TransactionType.TRANSFER, new BigDecimal("100.00"), 1),
+                new SpendRow(2L, today, TransactionType.TRANSFER, new BigDecimal("15.50"), 2)), rows.getValue());
+    }
+
+    @DisplayName("Сводка расходов собирается из строк накопителей за день и месяц.")
+    @Test
+    void summary_SumsTotalsByType() {
+        LocalDate day = LocalDate.of(2024, 5, 17);
+        when(spendRollupRepository.findDaily(1L, day)).thenReturn(List.of(
+                new SpendTotal(TransactionType.DEBIT, new BigDecimal("40.00"), 2)));
+        when(spendRollupRepository.findMonthly(1L, YearMonth.of(2024, 5))).thenReturn(List.of(
+                new SpendTotal(TransactionType.DEBIT, new BigDecimal("140.00"), 5),
+                new SpendTotal(TransactionType.TRANSFER, new BigDecimal("60.00"), 1)));
+
+        CardSpendSummaryResponse summary = spendRollupService.summary(1L, day);
+
+        assertEquals(new BigDecimal("40.00"), summary.spentToday());
+        assertEquals(new BigDecimal("200.00"), summary.spentThisMonth());
+        assertEquals(YearMonth.of(2024, 5), summary.month());
+        assertEquals(List.of(new SpendTotalResponse("DEBIT", new BigDecimal("40.00"), 2)), summary.daily());
+    }
+
+    private Transaction transaction(TransactionType type, TransactionStatus status) {
+        Card source = new Card();
+        source.setId(1L);
+
+        Transaction transaction = new Transaction();
+        transaction.setSourceCard(source);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setTransactionType(type);
+        transaction.setTransactionStatus(status);
+        return transaction;
+    }
+}
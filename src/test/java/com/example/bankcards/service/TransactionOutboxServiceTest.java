@@ -0,0 +1,69 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.entity.operations.Transaction;
+import com.example.bankcards.outbox.TransactionEvent;
+import com.example.bankcards.repository.BulkTransferRepository.TransferRow;
+import com.example.bankcards.repository.TransactionOutboxRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionOutboxServiceTest {
+
+    @Mock
+    private TransactionOutboxRepository transactionOutboxRepository;
+
+    @DisplayName("Событие о транзакции пишется в outbox, когда релей включён.")
+    @Test
+    void record_Enabled_AppendsEvent() {
+        new TransactionOutboxService(transactionOutboxRepository, true).record(transaction());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransactionEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(transactionOutboxRepository).append(events.capture());
+        TransactionEvent event = events.getValue().get(0);
+        assertEquals(10L, event.transactionId());
+        assertEquals("DEBIT", event.type());
+        assertEquals(1L, event.sourceCardId());
+        assertNull(event.targetCardId());
+    }
+
+    @DisplayName("При выключенном outbox события не пишутся: без релея таблица росла бы без потребителя.")
+    @Test
+    void record_Disabled_NothingAppended() {
+        TransactionOutboxService service = new TransactionOutboxService(transactionOutboxRepository, false);
+
+        service.record(transaction());
+        service.recordTransfers(List.of(new TransferRow(1L, 2L, new BigDecimal("10.00"), "RUB")), List.of(11L));
+
+        verifyNoInteractions(transactionOutboxRepository);
+    }
+
+    private Transaction transaction() {
+        Card source = new Card();
+        source.setId(1L);
+
+        Transaction transaction = new Transaction();
+        transaction.setId(10L);
+        transaction.setSourceCard(source);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setCurrency("RUB");
+        transaction.setTransactionType(TransactionType.DEBIT);
+        transaction.setTransactionStatus(TransactionStatus.SUCCESS);
+        return transaction;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionPartitionServiceTest {
+
+    @Mock
+    private TransactionPartitionRepository transactionPartitionRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final YearMonth current = YearMonth.now();
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @DisplayName("Секции создаются на текущий и premake-months следующих месяцев, старые уходят в архив.")
+    @Test
+    void maintainPartitions_CreatesFutureAndArchivesExpired() {
+        TransactionPartitionService service = service(true, 2, 12, "cold");
+        YearMonth expired = current.minusMonths(12);
+        YearMonth kept = current.minusMonths(11);
+        when(transactionPartitionRepository.tryLock()).thenReturn(true);
+        when(transactionPartitionRepository.findPartitions()).thenReturn(List.of(expired, kept, current));
+
+        service.maintainPartitions();
+
+        verify(transactionPartitionRepository).createPartition(current);
+        verify(transactionPartitionRepository).createPartition(current.plusMonths(1));
+        verify(transactionPartitionRepository).createPartition(current.plusMonths(2));
+        verify(transactionPartitionRepository, times(3)).createPartition(any());
+        verify(transactionPartitionRepository).archivePartition(expired, "cold", "2s");
+        verify(transactionPartitionRepository, times(1)).archivePartition(any(), any(), any());
+    }
+
+    @DisplayName("Без advisory-блокировки узел не создаёт и не архивирует секции.")
+    @Test
+    void maintainPartitions_LockHeldByOtherNode_DoesNothing() {
+        TransactionPartitionService service = service(true, 3, 24, "");
+        when(transactionPartitionRepository.tryLock()).thenReturn(false);
+        when(transactionPartitionRepository.findPartitions()).thenReturn(List.of(current.minusMonths(30)));
+
+        service.maintainPartitions();
+
+        verify(transactionPartitionRepository, never()).createPartition(any());
+        verify(transactionPartitionRepository, never()).archivePartition(any(), any(), any());
+    }
+
+    @DisplayName("Без archive-enabled секции только создаются, в архив ничего не уходит.")
+    @Test
+    void maintainPartitions_ArchiveDisabled_OnlyCreates() {
+        TransactionPartitionService service = service(false, 0, 1, "");
+        when(transactionPartitionRepository.tryLock()).thenReturn(true);
+
+        service.maintainPartitions();
+
+        verify(transactionPartitionRepository).createPartition(current);
+        verify(transactionPartitionRepository, never()).findPartitions();
+        verify(transactionPartitionRepository, never()).archivePartition(any(), any(), any());
+    }
+
+    @DisplayName("Имя табличного пространства архива проверяется при старте.")
+    @Test
+    void constructor_InvalidTablespace_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> service(true, 3, 24, "cold; DROP TABLE card"));
+    }
+
+    private TransactionPartitionService service(boolean archiveEnabled, int premakeMonths, int retentionMonths,
+                                                String tablespace) {
+        return new TransactionPartitionService(transactionPartitionRepository, transactionTemplate,
+                true, archiveEnabled, premakeMonths, retentionMonths, tablespace, "2s");
+    }
+}
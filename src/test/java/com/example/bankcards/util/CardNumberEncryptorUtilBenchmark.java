@@ -0,0 +1,72 @@
+package com.example.bankcards.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение шифрования номера карты: прежний вариант (Cipher.getInstance на каждый вызов)
+ * против переиспользуемых шифров CardNumberEncryptorUtil.
+ * Запуск: mvn test-compile, затем main этого класса с test classpath.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardNumberEncryptorUtilBenchmark {
+
+    private static final String CARD_NUMBER = "1234567890123456";
+
+    private CardNumberEncryptorUtil encryptorUtil;
+    private String encryptedCardNumber;
+
+    @Setup
+    public void setUp() {
+        encryptorUtil = new CardNumberEncryptorUtil("ENCRYPTION_SECRET", "1961000000abcdef");
+        encryptedCardNumber = encryptorUtil.encryptCardNumber(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String encryptPerCallCipher() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, encryptorUtil.getSecretKey());
+        return Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes()));
+    }
+
+    @Benchmark
+    public String decryptPerCallCipher() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, encryptorUtil.getSecretKey());
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedCardNumber)));
+    }
+
+    @Benchmark
+    public String encryptReusedCipher() {
+        return encryptorUtil.encryptCardNumber(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decryptReusedCipher() {
+        return encryptorUtil.decryptCardNumber(encryptedCardNumber);
+    }
+
+    @Benchmark
+    public byte[] decryptReusedCipherToBytes() {
+        return encryptorUtil.decryptToBytes(encryptedCardNumber);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CardNumberEncryptorUtilBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DecryptedCardNumberCacheTest {
+
+    @DisplayName("Повторное чтение того же ciphertext берётся из кэша без расшифровки.")
+    @Test
+    void get_SameCiphertext_DecryptsOnce() {
+        DecryptedCardNumberCache cache = new DecryptedCardNumberCache(true, 10, 60);
+        AtomicInteger decrypts = new AtomicInteger();
+
+        String first = cache.get("cipher", value -> decrypt(value, decrypts));
+        String second = cache.get("cipher", value -> decrypt(value, decrypts));
+
+        assertEquals("plain-cipher", first);
+        assertEquals("plain-cipher", second);
+        assertEquals(1, decrypts.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @DisplayName("Выключенный кэш расшифровывает при каждом чтении и ничего не хранит.")
+    @Test
+    void get_Disabled_AlwaysDecrypts() {
+        DecryptedCardNumberCache cache = new DecryptedCardNumberCache(false, 10, 60);
+        AtomicInteger decrypts = new AtomicInteger();
+
+        cache.get("cipher", value -> decrypt(value, decrypts));
+        cache.get("cipher", value -> decrypt(value, decrypts));
+
+        assertEquals(2, decrypts.get());
+        assertEquals(0, cache.size());
+    }
+
+    @DisplayName("Просроченная запись расшифровывается заново.")
+    @Test
+    void get_Expired_DecryptsAgain() {
+        DecryptedCardNumberCache cache = new DecryptedCardNumberCache(true, 10, 0);
+        AtomicInteger decrypts = new AtomicInteger();
+
+        cache.get("cipher", value -> decrypt(value, decrypts));
+        cache.get("cipher", value -> decrypt(value, decrypts));
+
+        assertEquals(2, decrypts.get());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @DisplayName("Размер кэша не превышает max-size.")
+    @Test
+    void get_Overflow_EvictsToMaxSize() {
+        DecryptedCardNumberCache cache = new DecryptedCardNumberCache(true, 3, 60);
+        AtomicInteger decrypts = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("cipher-" + i, value -> decrypt(value, decrypts));
+        }
+
+        assertEquals(3, cache.size());
+        assertEquals(7, cache.getEvictionCount());
+    }
+
+    @DisplayName("Параллельные чтения возвращают правильные номера и не выходят за max-size.")
+    @Test
+    void get_Concurrent_ReturnsCorrectValues() throws Exception {
+        DecryptedCardNumberCache cache = new DecryptedCardNumberCache(true, 50, 60);
+        AtomicInteger decrypts = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        String cipher = "cipher-" + (i % 100);
+                        assertEquals("plain-" + cipher, cache.get(cipher, value -> decrypt(value, decrypts)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(cache.size() <= 50);
+    }
+
+    private static String decrypt(String cipher, AtomicInteger decrypts) {
+        decrypts.incrementAndGet();
+        return "plain-" + cipher;
+    }
+}